@@ -1,9 +1,17 @@
 package controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -12,35 +20,137 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import model.automaton.Automaton;
 import model.automaton.State;
+import model.events.BooleanOperationEvent;
+import model.events.EpsilonClosureEvent;
+import model.events.RefinementPassEvent;
+import model.events.SubsetConstructionEvent;
 import model.exception.AutomatonAlreadyDeterministicException;
 import model.exception.AutomatonAlreadyMinimumException;
 import model.exception.AutomatonIsEmptyException;
+import model.exception.AutomatonTooLargeException;
+import model.io.AutomatonCodec;
+import model.io.AutomatonWriter;
+import model.io.MappedAutomaton;
+import model.io.WorkspaceSnapshot;
+import model.io.WorkspaceWriter;
+import model.matcher.ByteDFA;
+import model.matcher.BytecodeCompiler;
+import model.matcher.InclusionChecker;
+import model.matcher.IncrementalRuleSet;
+import model.matcher.IndexedNFA;
+import model.matcher.LanguageCounter;
+import model.matcher.LazyDFAMatcher;
+import model.matcher.LiteralPrefilter;
+import model.matcher.Matcher;
+import model.matcher.MultiPatternMatcher;
+import model.matcher.NFAReducer;
+import model.matcher.NFASimulationMatcher;
+import model.matcher.ParallelDeterminiser;
+import model.matcher.ParallelMinimiser;
+import model.matcher.ProductUnion;
+import model.matcher.ShiftAndMatcher;
+import model.matcher.UniversalityChecker;
+import model.metrics.Counter;
+import model.metrics.Histogram;
+import model.metrics.HitRatio;
+import model.metrics.Metrics;
+import model.metrics.Timer;
+import model.regex.CharacterClass;
+import model.regex.DerivativeCompiler;
+import model.regex.Literals;
+import model.regex.Positions;
 import model.regex.RegExParser;
 import model.regex.RegExTree;
+import model.regex.Term;
 
 public class Controller {
 
     private static final String NON_DETERMINISTIC = "Automaton is non-deterministic and shall be converted to a DFA:";
+    private static final int MAX_CACHE_FLUSHES = 16;
+    private static final int PARALLEL_DETERMINISATION_THRESHOLD = 32;
+    private static final int PARALLEL_MINIMISATION_THRESHOLD = 128;
+    public static final int EQUIVALENT = 0;
+    public static final int SUBSET = -1;
+    public static final int SUPERSET = 1;
+    public static final int INCOMPARABLE = 2;
     private static Controller instance = new Controller();
+    private static final Timer CONVERT = Metrics.timer("controller.convert");
+    private static final Histogram CONVERTED_STATES = Metrics.histogram("controller.convert.states");
+    private static final HitRatio CONVERT_CACHE = Metrics.hitRatio("controller.convert.cache");
+    private static final Timer DERIVATIVES = Metrics.timer("controller.derivatives");
+    private static final HitRatio DERIVATIVES_CACHE = Metrics.hitRatio("controller.derivatives.cache");
+    private static final HitRatio REGEX_MATCHER_CACHE = Metrics.hitRatio("controller.regexMatcher.cache");
+    private static final Counter MATCHES = Metrics.counter("controller.matches");
+    private static final Counter REGEX_MATCHES = Metrics.counter("controller.matchesRegex");
+    private static final Timer COMPILE_BYTE_DFA = Metrics.timer("controller.compileToByteDFA");
+    private static final Timer COMPILE_BYTECODE = Metrics.timer("controller.compileToBytecode");
+    private static final Timer MINIMISE = Metrics.timer("controller.minimise");
+    private static final Histogram STATES_BEFORE_MINIMISATION = Metrics.histogram("controller.minimise.statesBefore");
+    private static final Histogram STATES_AFTER_MINIMISATION = Metrics.histogram("controller.minimise.statesAfter");
+    private static final Timer DETERMINISE = Metrics.timer("controller.determinise");
+    private static final Histogram STATES_BEFORE_DETERMINISATION = Metrics
+            .histogram("controller.determinise.statesBefore");
+    private static final Histogram REDUCED_STATES = Metrics.histogram("controller.determinise.reducedStates");
+    private static final Histogram STATES_AFTER_DETERMINISATION = Metrics
+            .histogram("controller.determinise.statesAfter");
+    private static final Histogram PEAK_SUBSET = Metrics.histogram("controller.determinise.peakSubset");
+    private static final Timer COMPARE = Metrics.timer("controller.compare");
     private List<Automaton> automatons;
     private List<RegExTree> trees;
     private Map<RegExTree, Automaton> regexToAutomaton;
+    private Map<Automaton, Matcher> matchers;
+    private Map<Term, LiteralPrefilter> regexMatchers;
+    private Map<Term, Automaton> derivativeAutomatons;
+    private List<ByteBuffer> encodedAutomatons;
+    private Map<RegExTree, ByteBuffer> encodedRegexAutomatons;
+    private IncrementalRuleSet rules;
+    private int stateLimit;
 
     private Controller() {
         automatons = new ArrayList<>();
         trees = new ArrayList<>();
         regexToAutomaton = new HashMap<>();
+        matchers = new HashMap<>();
+        regexMatchers = new WeakHashMap<>();
+        derivativeAutomatons = new WeakHashMap<>();
+        encodedAutomatons = new ArrayList<>();
+        encodedRegexAutomatons = new HashMap<>();
+        rules = new IncrementalRuleSet();
+        stateLimit = RegExTree.DEFAULT_STATE_LIMIT;
     }
 
     public static Controller instance() {
         return instance;
     }
 
+    /**
+     * Creates a controller with a workspace of its own, apart from the one shown by the view. A
+     * controller must not be used by several threads at once, so work done in parallel needs one
+     * controller per thread.
+     */
+    public static Controller newInstance() {
+        return new Controller();
+    }
+
+    /**
+     * Sets the maximum number of states of the automata built from the regular expressions created
+     * from now on.
+     *
+     * @param stateLimit
+     *            - the state limit.
+     */
+    public void setStateLimit(int stateLimit) {
+        this.stateLimit = stateLimit;
+    }
+
     public int createRegularExpression(String input) {
         RegExTree tree = new RegExParser(input).parse();
+        tree.setStateLimit(stateLimit);
         tree.setInput(input);
         tree.setName("Regex " + trees.size());
         return addRegularExpression(tree);
@@ -54,29 +164,454 @@ public class Controller {
     public void removeRegex(int index) {
         RegExTree tree = trees.remove(index);
         regexToAutomaton.remove(tree);
+        encodedRegexAutomatons.remove(tree);
     }
 
-    public int convertRegExToAutomaton(int index) {
-        int automatonIndex;
+    /**
+     * Converts the regular expression into a DFA, unless it was already converted.
+     * 
+     * @param index
+     *            - the index to the regular expression tree.
+     * @return the index to the automaton.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would be too large; such regular expressions can still be matched
+     *             through {@link #matchesRegex(int, String)}.
+     */
+    public int convertRegExToAutomaton(int index) throws AutomatonTooLargeException {
         RegExTree tree = trees.get(index);
-        Automaton automaton = regexToAutomaton.get(tree);
-        if (automaton == null) {
+        int automatonIndex = automatonIndexOf(tree);
+        CONVERT_CACHE.lookup(automatonIndex != -1);
+        if (automatonIndex == -1) {
+            long start = System.nanoTime();
             Automaton dfa = tree.convertToDFA();
+            CONVERT.record(start, tree.input());
+            CONVERTED_STATES.record(dfa.states().size());
             automatonIndex = addAutomaton(dfa);
             regexToAutomaton.put(tree, dfa);
-        } else {
-            automatonIndex = automatons.indexOf(automaton);
         }
         return automatonIndex;
     }
 
+    /**
+     * Converts the regular expression into a DFA built from Brzozowski derivatives, which is
+     * usually close to minimal. Regular expressions with the same term share the DFA.
+     * 
+     * @param index
+     *            - the index to the regular expression tree.
+     * @return the index to the automaton.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would be too large.
+     */
+    public int convertRegExToAutomatonByDerivatives(int index) throws AutomatonTooLargeException {
+        RegExTree tree = trees.get(index);
+        Automaton dfa = derivativeAutomatons.get(tree.term());
+        int automatonIndex = dfa == null ? -1 : automatons.indexOf(dfa);
+        DERIVATIVES_CACHE.lookup(automatonIndex != -1);
+        if (automatonIndex == -1) {
+            long start = System.nanoTime();
+            dfa = tree.convertToDFAByDerivatives();
+            DERIVATIVES.record(start, tree.input());
+            automatonIndex = addAutomaton(dfa);
+            dfa.setName("DFA " + automatonIndex + " (derivatives of " + tree.name() + ")");
+            derivativeAutomatons.put(tree.term(), dfa);
+        }
+        return automatonIndex;
+    }
+
+    /**
+     * Builds the DFA of the words denoted by both regular expressions, directly from their terms.
+     * 
+     * @param indexA
+     *            - the index to the first regular expression tree.
+     * @param indexB
+     *            - the index to the second regular expression tree.
+     * @return the index to the new automaton.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would be too large.
+     */
+    public int intersectRegularExpressions(int indexA, int indexB) throws AutomatonTooLargeException {
+        RegExTree treeA = trees.get(indexA);
+        RegExTree treeB = trees.get(indexB);
+        Term term = Term.intersection(treeA.term(), treeB.term());
+        Automaton dfa = new DerivativeCompiler().compile(term, null);
+        int automatonIndex = addAutomaton(dfa);
+        dfa.setName("DFA " + automatonIndex + " (" + treeA.name() + " \u2229 " + treeB.name() + ")");
+        return automatonIndex;
+    }
+
+    /**
+     * Builds the DFA of the words not denoted by the regular expression, over the characters of
+     * its own vocabulary.
+     * 
+     * @param index
+     *            - the index to the regular expression tree.
+     * @return the index to the new automaton.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would be too large.
+     */
+    public int complementRegularExpression(int index) throws AutomatonTooLargeException {
+        RegExTree tree = trees.get(index);
+        Automaton dfa = new DerivativeCompiler().compile(Term.complement(tree.term()), null);
+        int automatonIndex = addAutomaton(dfa);
+        dfa.setName("DFA " + automatonIndex + " (not " + tree.name() + ")");
+        return automatonIndex;
+    }
+
+    /**
+     * Converts the regular expression into its position automaton, which is non-deterministic but
+     * never larger than the regular expression itself.
+     * 
+     * @param index
+     *            - the index to the regular expression tree.
+     * @return the index to the new automaton.
+     */
+    public int convertRegExToNFA(int index) {
+        RegExTree tree = trees.get(index);
+        Automaton nfa = tree.convertToNFA();
+        int automatonIndex = addAutomaton(nfa);
+        nfa.setName("NFA " + automatonIndex + " (" + tree.name() + ")");
+        return automatonIndex;
+    }
+
+    /**
+     * Checks whether the automaton accepts the given input. The automaton is never determinised:
+     * DFA states are built lazily as the input reaches them, so non-deterministic automata whose
+     * DFA would be too large can still be used for matching. If the lazy DFA keeps overflowing its
+     * cache, the automaton falls back to a direct NFA simulation.
+     * 
+     * @param index
+     *            - the index to the automaton.
+     * @param input
+     *            - the input to be matched.
+     * @return true if the input is accepted.
+     */
+    public boolean matches(int index, String input) {
+        MATCHES.increment();
+        Automaton automaton = automatonAt(index);
+        Matcher matcher = matchers.get(automaton);
+        if (matcher == null) {
+            matcher = new LazyDFAMatcher(new IndexedNFA(automaton));
+            matchers.put(automaton, matcher);
+        } else if (matcher instanceof LazyDFAMatcher && ((LazyDFAMatcher) matcher).flushes() > MAX_CACHE_FLUSHES) {
+            System.out.println("DFA cache of " + automaton.name() + " keeps overflowing, simulating the NFA.");
+            matcher = new NFASimulationMatcher(new IndexedNFA(automaton));
+            matchers.put(automaton, matcher);
+        }
+        return matcher.matches(input);
+    }
+
+    /**
+     * Checks whether the regular expression matches the given input, without converting it into a
+     * DFA. Short regular expressions are matched bit-parallel over their positions, longer ones
+     * through a lazily built DFA of their position automaton.
+     * 
+     * @param index
+     *            - the index to the regular expression tree.
+     * @param input
+     *            - the input to be matched.
+     * @return true if the input is accepted.
+     */
+    public boolean matchesRegex(int index, String input) {
+        REGEX_MATCHES.increment();
+        return regexMatcher(index).matches(input);
+    }
+
+    /**
+     * Finds the lines of the text matched in full by the regular expression. Lines lacking a
+     * literal required by the regular expression are skipped without being matched.
+     * 
+     * @param index
+     *            - the index to the regular expression tree.
+     * @param text
+     *            - lines separated by '\n'.
+     * @return the matching lines.
+     */
+    public List<String> matchingLines(int index, String text) {
+        return regexMatcher(index).matchingLines(text);
+    }
+
+    private LiteralPrefilter regexMatcher(int index) {
+        RegExTree tree = trees.get(index);
+        LiteralPrefilter matcher = regexMatchers.get(tree.term());
+        REGEX_MATCHER_CACHE.lookup(matcher != null);
+        if (matcher == null) {
+            Literals literals = tree.literals();
+            if (tree.positionCount() <= ShiftAndMatcher.MAX_POSITIONS) {
+                matcher = new LiteralPrefilter(literals, new ShiftAndMatcher(tree.positions()));
+            } else {
+                matcher = new LiteralPrefilter(literals, new LazyDFAMatcher(new IndexedNFA(tree.convertToNFA())));
+            }
+            regexMatchers.put(tree.term(), matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Compiles several regular expressions into a single DFA, which reports in one pass every
+     * regular expression matching an input. Patterns are identified by their position in the
+     * given list, not by their index in the list of regular expressions.
+     * 
+     * @param indices
+     *            - the indices to the regular expression trees.
+     * @return the combined matcher.
+     * @throws AutomatonTooLargeException
+     *             if the combined DFA would be too large.
+     */
+    public MultiPatternMatcher compileRegularExpressions(List<Integer> indices) throws AutomatonTooLargeException {
+        List<Positions> patterns = new ArrayList<>(indices.size());
+        for (int index : indices) {
+            patterns.add(trees.get(index).positions());
+        }
+        return new MultiPatternMatcher(patterns);
+    }
+
+    /**
+     * Adds a regular expression to the rule set of the workspace, whose combined minimal DFA is
+     * updated in place rather than rebuilt. The regular expression is the tag of the rule, so
+     * adding the same one again only counts it again.
+     *
+     * @param index
+     *            - the index to the regular expression tree.
+     */
+    public void addRule(int index) {
+        RegExTree tree = trees.get(index);
+        String tag = tree.input() != null ? tree.input() : tree.toString();
+        rules.add(tag, new IndexedNFA(tree.getDfa()));
+        System.out.println("Rule set: " + rules.ruleCount() + " rules, " + rules.stateCount() + " states.");
+    }
+
+    /**
+     * Removes a regular expression from the rule set of the workspace, once it has been removed as
+     * many times as it was added.
+     *
+     * @param index
+     *            - the index to the regular expression tree.
+     * @return true if the regular expression is no longer in the rule set.
+     */
+    public boolean removeRule(int index) {
+        RegExTree tree = trees.get(index);
+        boolean removed = rules.remove(tree.input() != null ? tree.input() : tree.toString());
+        System.out.println("Rule set: " + rules.ruleCount() + " rules, " + rules.stateCount() + " states.");
+        return removed;
+    }
+
+    public IncrementalRuleSet rules() {
+        return rules;
+    }
+
+    /**
+     * Adds the combined DFA of the rule set to the list of automatons.
+     *
+     * @return the index to the automaton.
+     */
+    public int rulesToAutomaton() {
+        int index = addAutomaton(rules.toAutomaton("Rules " + automatons.size()));
+        printAutomaton(index);
+        return index;
+    }
+
+    /**
+     * Lowers the automaton into a DFA over UTF-8 bytes, which matches encoded input without
+     * decoding it. A non-deterministic automaton is determinised first.
+     * 
+     * @param index
+     *            - the index to the automaton.
+     * @return the byte level DFA.
+     */
+    public ByteDFA compileToByteDFA(int index) {
+        Automaton automaton = automatonAt(index);
+        if (automaton.isNonDeterministic()) {
+            System.out.println(NON_DETERMINISTIC);
+            automaton = automatonAt(determinise(index));
+        }
+        long start = System.nanoTime();
+        ByteDFA dfa = new ByteDFA(new IndexedNFA(automaton));
+        COMPILE_BYTE_DFA.record(start, subjectOf(automaton));
+        System.out.println("Byte DFA of " + automaton.name() + ": " + dfa.stateCount() + " states, "
+                + dfa.classCount() + " byte classes.");
+        return dfa;
+    }
+
+    /**
+     * Writes the automaton to a file in the binary automaton format. A non-deterministic automaton
+     * is determinised first. If the automaton was converted from a regular expression, the
+     * regular expression is written along with it.
+     * 
+     * @param index
+     *            - the index to the automaton.
+     * @param path
+     *            - the file to be written.
+     */
+    public void saveAutomaton(int index, Path path) throws IOException {
+        Automaton automaton = automatonAt(index);
+        if (automaton.isNonDeterministic()) {
+            System.out.println(NON_DETERMINISTIC);
+            automaton = automatonAt(determinise(index));
+        }
+        String source = null;
+        for (Map.Entry<RegExTree, Automaton> entry : regexToAutomaton.entrySet()) {
+            if (entry.getValue() == automaton) {
+                source = entry.getKey().input();
+            }
+        }
+        new AutomatonWriter().write(automaton, source, path);
+    }
+
+    /**
+     * Reads an automaton written by {@link #saveAutomaton(int, Path)}. If it was converted from a
+     * regular expression, the regular expression is created again and mapped to the automaton.
+     * 
+     * @param path
+     *            - the file to be read.
+     * @return the index to the new automaton.
+     */
+    public int loadAutomaton(Path path) throws IOException {
+        MappedAutomaton mapped = MappedAutomaton.open(path);
+        Automaton automaton = mapped.toAutomaton();
+        int automatonIndex = addAutomaton(automaton);
+        if (mapped.source() != null) {
+            int regexIndex = createRegularExpression(mapped.source());
+            regexToAutomaton.put(trees.get(regexIndex), automaton);
+        }
+        return automatonIndex;
+    }
+
+    /**
+     * Compiles the automaton into a class of its own, whose code jumps from state to state with no
+     * table lookups. A non-deterministic automaton is determinised first. The compiled matcher is
+     * then used by {@link #matches(int, String)} for the deterministic automaton.
+     * 
+     * @param index
+     *            - the index to the automaton.
+     * @return the compiled matcher.
+     * @throws IllegalArgumentException
+     *             if the automaton is too large to be compiled.
+     */
+    public Matcher compileToBytecode(int index) {
+        Automaton automaton = automatonAt(index);
+        if (automaton.isNonDeterministic()) {
+            System.out.println(NON_DETERMINISTIC);
+            automaton = automatonAt(determinise(index));
+        }
+        long start = System.nanoTime();
+        Matcher matcher = BytecodeCompiler.compile(new IndexedNFA(automaton));
+        COMPILE_BYTECODE.record(start, subjectOf(automaton));
+        matchers.put(automaton, matcher);
+        return matcher;
+    }
+
     public int getAutomatonForRegex(int regexIndex) {
-        Automaton automaton = regexToAutomaton.get(trees.get(regexIndex));
+        return automatonIndexOf(trees.get(regexIndex));
+    }
+
+    /**
+     * Finds the automaton converted from the regular expression, without decoding it if it was
+     * restored from a workspace snapshot and not used yet.
+     */
+    private int automatonIndexOf(RegExTree tree) {
+        Automaton automaton = regexToAutomaton.get(tree);
+        if (automaton != null) {
+            return automatons.indexOf(automaton);
+        }
+        ByteBuffer record = encodedRegexAutomatons.get(tree);
+        for (int i = 0; record != null && i < encodedAutomatons.size(); i++) {
+            if (encodedAutomatons.get(i) == record) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Saves the regular expressions and automata into a workspace snapshot. Automata restored from
+     * an earlier snapshot and never used since are copied without being decoded. The snapshot is
+     * written to a temporary file first, which then replaces the given file.
+     * 
+     * @param path
+     *            - the file to be written.
+     */
+    public void saveWorkspace(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, "workspace", ".tmp");
+        try {
+            try (WorkspaceWriter writer = new WorkspaceWriter(Files.newOutputStream(temporary), trees.size(),
+                    automatons.size())) {
+                for (RegExTree tree : trees) {
+                    writer.writeRegex(tree.input(), tree.name(), automatonIndexOf(tree));
+                }
+                for (int i = 0; i < automatons.size(); i++) {
+                    if (automatons.get(i) == null) {
+                        writer.writeEncodedAutomaton(encodedAutomatons.get(i));
+                    } else {
+                        writer.writeAutomaton(automatons.get(i));
+                    }
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Replaces the workspace with the one saved in a snapshot. Regular expressions are parsed
+     * again, but automata are only decoded when they are first used, so large workspaces are
+     * restored at once.
+     * 
+     * @param path
+     *            - the file to be read.
+     */
+    public void loadWorkspace(Path path) throws IOException {
+        WorkspaceSnapshot snapshot = WorkspaceSnapshot.open(path);
+        trees.clear();
+        automatons.clear();
+        encodedAutomatons.clear();
+        regexToAutomaton.clear();
+        encodedRegexAutomatons.clear();
+        matchers.clear();
+
+        for (int i = 0; i < snapshot.automatonCount(); i++) {
+            automatons.add(null);
+            encodedAutomatons.add(snapshot.automatonRecord(i));
+        }
+        for (int i = 0; i < snapshot.regexCount(); i++) {
+            RegExTree tree = new RegExParser(snapshot.regexInput(i)).parse();
+            tree.setStateLimit(stateLimit);
+            tree.setInput(snapshot.regexInput(i));
+            tree.setName(snapshot.regexName(i) == null ? "Regex " + i : snapshot.regexName(i));
+            trees.add(tree);
+            int automatonIndex = snapshot.regexAutomaton(i);
+            if (automatonIndex != -1) {
+                encodedRegexAutomatons.put(tree, encodedAutomatons.get(automatonIndex));
+            }
+        }
+    }
 
+    /**
+     * Returns the automaton with the given index, decoding it first if it was restored from a
+     * workspace snapshot and not used yet.
+     */
+    private Automaton automatonAt(int index) {
+        Automaton automaton = automatons.get(index);
         if (automaton == null) {
-            return -1;
+            ByteBuffer record = encodedAutomatons.get(index);
+            try {
+                automaton = AutomatonCodec.decode(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            automatons.set(index, automaton);
+            encodedAutomatons.set(index, null);
+            Iterator<Map.Entry<RegExTree, ByteBuffer>> entries = encodedRegexAutomatons.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<RegExTree, ByteBuffer> entry = entries.next();
+                if (entry.getValue() == record) {
+                    regexToAutomaton.put(entry.getKey(), automaton);
+                    entries.remove();
+                }
+            }
         }
-        return automatons.indexOf(automaton);
+        return automaton;
     }
 
     /**
@@ -130,6 +665,7 @@ public class Controller {
      */
     private int addAutomaton(Automaton automaton) {
         automatons.add(automaton);
+        encodedAutomatons.add(null);
         return automatons.size() - 1;
     }
 
@@ -143,13 +679,42 @@ public class Controller {
      * @throws AutomatonAlreadyMinimumException
      */
     public int minimise(int index) throws AutomatonAlreadyMinimumException, AutomatonIsEmptyException {
-        Automaton automaton = automatons.get(index);
+        long start = System.nanoTime();
+        Automaton automaton = automatonAt(index);
+        STATES_BEFORE_MINIMISATION.record(automaton.states().size());
+        try {
+            int minimumIndex = minimiseAutomaton(index);
+            STATES_AFTER_MINIMISATION.record(automatonAt(minimumIndex).states().size());
+            return minimumIndex;
+        } catch (AutomatonAlreadyMinimumException e) {
+            STATES_AFTER_MINIMISATION.record(automaton.states().size());
+            throw e;
+        } finally {
+            MINIMISE.record(start, subjectOf(automaton));
+        }
+    }
+
+    /**
+     * @return the input of the regular expression the automaton was converted from, or else the
+     *         name of the automaton, to tell in the metrics which rule an operation worked on.
+     */
+    private String subjectOf(Automaton automaton) {
+        for (Map.Entry<RegExTree, Automaton> entry : regexToAutomaton.entrySet()) {
+            if (entry.getValue() == automaton) {
+                return entry.getKey().input();
+            }
+        }
+        return automaton.name();
+    }
+
+    private int minimiseAutomaton(int index) throws AutomatonAlreadyMinimumException, AutomatonIsEmptyException {
+        Automaton automaton = automatonAt(index);
         boolean wasDeterminised = false;
 
         if (automaton.isNonDeterministic()) {
             System.out.println(NON_DETERMINISTIC);
             index = determinise(index);
-            automaton = automatons.get(index);
+            automaton = automatonAt(index);
             wasDeterminised = true;
         } else if (automaton.isMinimum()) {
             throw new AutomatonAlreadyMinimumException();
@@ -157,7 +722,9 @@ public class Controller {
 
         // Creates a copy automaton so that it's safe to
         // remove unreachable and dead states
+        String name = automaton.name();
         automaton = new Automaton(automaton);
+        automaton.setName(name);
 
         try {
             int size = automaton.states().size();
@@ -174,7 +741,7 @@ public class Controller {
             throw e;
         }
 
-        automatons.get(index).setName("DFA " + index + " (min)");
+        automatonAt(index).setName("DFA " + index + " (min)");
         return index;
     }
 
@@ -207,6 +774,7 @@ public class Controller {
         } else {
             automaton.acceptingStates().removeAll(unreachable);
             automaton.states().removeAll(unreachable);
+            forgetMatchers(automaton);
             System.out.println("done.");
             System.out.println("Unreachable states removed: " + unreachable);
             System.out.println("Resulting automaton:");
@@ -246,6 +814,7 @@ public class Controller {
             System.out.println("nothing to be done.");
         } else {
             automaton.removeDeadStates(dead);
+            forgetMatchers(automaton);
             System.out.println("done.");
             System.out.println("Dead states removed: " + dead);
             System.out.println("Resulting automaton:");
@@ -261,6 +830,76 @@ public class Controller {
             throw new AutomatonIsEmptyException();
         }
 
+        List<List<State>> classes = null;
+        if (automaton.states().size() >= PARALLEL_MINIMISATION_THRESHOLD) {
+            classes = new ParallelMinimiser().partition(automaton);
+        } else {
+            classes = inStateOrder(automaton, refineClasses(automaton));
+        }
+
+        // Each equivalent class is a state. Ex.:
+        // {A, B} becomes H
+        // {C} becomes I
+        // {D, E} becomes J
+        //
+        // statesMapping maps each previous state to the new state (class):
+        // A --> H; B --> H; C --> I
+        // D --> J; E --> J
+        Map<State, State> statesMapping = new HashMap<>();
+        for (List<State> toClass : classes) {
+            Set<String> labels = new TreeSet<>();
+            for (State state : toClass) {
+                labels.addAll(state.labels());
+            }
+            for (State state : toClass) {
+                statesMapping.put(state, new State(labels));
+            }
+        }
+
+        Automaton equivalent = new Automaton(automaton.name(), automaton.vocabulary());
+        List<State> transitions = null;
+
+        for (List<State> equivalentClass : classes) {
+            transitions = new ArrayList<>();
+            State representative = equivalentClass.get(0);
+            for (String symbol : automaton.vocabulary()) {
+                State toState = automaton.transitionFrom(representative, symbol);
+                if (toState.equals(State.ERROR_STATE)) {
+                    transitions.add(State.ERROR_STATE);
+                } else {
+                    transitions.add(statesMapping.get(toState));
+                }
+            }
+            equivalent.addTransitions(statesMapping.get(representative), transitions);
+        }
+        for (State state : automaton.acceptingStates()) {
+            equivalent.addAcceptingState(statesMapping.get(state));
+        }
+        equivalent.setInitialState(statesMapping.get(automaton.initial()));
+        equivalent.setMinimum(true);
+        int index;
+
+        // User might have given the minimum automaton
+        if (equivalent.states().size() == size) {
+            System.out.println("nothing to be done.");
+            throw new AutomatonAlreadyMinimumException();
+        } else {
+            System.out.println("done.");
+            System.out.println("Equivalent classes: " + classes);
+            System.out.println("Resulting automaton:");
+            printAutomaton(equivalent);
+            System.out.println("Renamed automaton:");
+            index = addAutomaton(equivalent.renameTupleStatesToSingleState());
+            printAutomaton(index);
+        }
+        return index;
+    }
+
+    /**
+     * Splits the states of the automaton into classes of equivalent states, by refining the
+     * accepting and non-accepting states until no class can be split.
+     */
+    private Set<List<State>> refineClasses(Automaton automaton) {
         Set<List<State>> classes = new HashSet<>();
         List<State> nonAccepting = new ArrayList<>(automaton.states());
 
@@ -271,7 +910,11 @@ public class Controller {
         }
 
         boolean needsAnotherPass = true;
+        int pass = 0;
         while (classes.size() != automaton.states().size() && needsAnotherPass) {
+            RefinementPassEvent event = new RefinementPassEvent();
+            event.begin();
+            int classesBefore = classes.size();
             needsAnotherPass = false;
             Map<List<State>, List<State>> castOutMapping = new HashMap<>();
             List<State> castOut = null;
@@ -313,64 +956,41 @@ public class Controller {
                 entry.getKey().removeAll(entry.getValue());
                 classes.add(entry.getValue());
             }
-        }
-
-        // Each equivalent class is a state. Ex.:
-        // {A, B} becomes H
-        // {C} becomes I
-        // {D, E} becomes J
-        //
-        // statesMapping maps each previous state to the new state (class):
-        // A --> H; B --> H; C --> I
-        // D --> J; E --> J
-        Map<State, State> statesMapping = new HashMap<>();
-        for (List<State> toClass : classes) {
-            Set<String> labels = new TreeSet<>();
-            for (State state : toClass) {
-                labels.addAll(state.labels());
-            }
-            for (State state : toClass) {
-                statesMapping.put(state, new State(labels));
+            event.end();
+            pass++;
+            if (event.shouldCommit()) {
+                event.automaton = automaton.name();
+                event.pass = pass;
+                event.states = automaton.states().size();
+                event.alphabetSize = automaton.vocabulary().size();
+                event.classesBefore = classesBefore;
+                event.classesAfter = classes.size();
+                event.commit();
             }
         }
+        return classes;
+    }
 
-        Automaton equivalent = new Automaton(automaton.name(), automaton.vocabulary());
-        List<State> transitions = null;
-
+    /**
+     * Orders the classes by their first state in the automaton, so that the minimum automaton is
+     * built in the same order whichever refinement found them.
+     */
+    private List<List<State>> inStateOrder(Automaton automaton, Set<List<State>> classes) {
+        Map<State, List<State>> classOf = new HashMap<>();
         for (List<State> equivalentClass : classes) {
-            transitions = new ArrayList<>();
-            State representative = equivalentClass.get(0);
-            for (String symbol : automaton.vocabulary()) {
-                State toState = automaton.transitionFrom(representative, symbol);
-                if (toState.equals(State.ERROR_STATE)) {
-                    transitions.add(State.ERROR_STATE);
-                } else {
-                    transitions.add(statesMapping.get(toState));
-                }
+            for (State state : equivalentClass) {
+                classOf.put(state, equivalentClass);
             }
-            equivalent.addTransitions(statesMapping.get(representative), transitions);
-        }
-        for (State state : automaton.acceptingStates()) {
-            equivalent.addAcceptingState(statesMapping.get(state));
         }
-        equivalent.setInitialState(statesMapping.get(automaton.initial()));
-        equivalent.setMinimum(true);
-        int index;
-
-        // User might have given the minimum automaton
-        if (equivalent.states().size() == size) {
-            System.out.println("nothing to be done.");
-            throw new AutomatonAlreadyMinimumException();
-        } else {
-            System.out.println("done.");
-            System.out.println("Equivalent classes: " + classes);
-            System.out.println("Resulting automaton:");
-            printAutomaton(equivalent);
-            System.out.println("Renamed automaton:");
-            index = addAutomaton(equivalent.renameTupleStatesToSingleState());
-            printAutomaton(index);
+        List<List<State>> ordered = new ArrayList<>();
+        for (State state : automaton.states()) {
+            List<State> equivalentClass = classOf.get(state);
+            if (equivalentClass != null) {
+                ordered.add(equivalentClass);
+                classOf.keySet().removeAll(equivalentClass);
+            }
         }
-        return index;
+        return ordered;
     }
 
     /**
@@ -382,90 +1002,135 @@ public class Controller {
      * @return the index to the new automaton.
      */
     public int determinise(int index) throws AutomatonAlreadyDeterministicException {
-        Automaton nfa = automatons.get(index);
+        Automaton nfa = automatonAt(index);
         boolean hasEpsilon = nfa.hasEpsilonTransitions();
 
         if (nfa.isNonDeterministic() || hasEpsilon) {
-            List<String> vocabulary = new ArrayList<>(nfa.vocabulary());
-            Map<State, State> closures = null;
-
-            if (hasEpsilon) {
-                vocabulary.remove(Automaton.EPSILON);
-                closures = epsilonClosuresFor(nfa);
-            } else {
-                closures = new HashMap<>();
-                for (State state : nfa.states()) {
-                    closures.put(state, state);
+            long start = System.nanoTime();
+            STATES_BEFORE_DETERMINISATION.record(nfa.states().size());
+            SubsetConstructionEvent event = new SubsetConstructionEvent();
+            event.begin();
+            Automaton dfa = null;
+            Automaton reduced = new NFAReducer().reduce(new IndexedNFA(nfa), nfa.name());
+            if (reduced != null) {
+                if (reduced.states().size() < nfa.states().size()) {
+                    System.out.println("NFA reduced from " + nfa.states().size() + " to " + reduced.states().size()
+                            + " states.");
                 }
+                REDUCED_STATES.record(reduced.states().size());
+            } else {
+                reduced = nfa;
+            }
+            if (reduced.states().size() >= PARALLEL_DETERMINISATION_THRESHOLD) {
+                dfa = new ParallelDeterminiser().determinise(new IndexedNFA(reduced), "DFA for " + nfa.name());
+            } else {
+                dfa = subsetConstruction(reduced, reduced.hasEpsilonTransitions());
+            }
+
+            int peakSubset = 0;
+            for (State state : dfa.states()) {
+                peakSubset = Math.max(peakSubset, state.labels().size());
+            }
+            PEAK_SUBSET.record(peakSubset);
+            STATES_AFTER_DETERMINISATION.record(dfa.states().size());
+            DETERMINISE.record(start, subjectOf(nfa));
+            event.end();
+            if (event.shouldCommit()) {
+                event.automaton = nfa.name();
+                event.nfaStates = nfa.states().size();
+                event.states = dfa.states().size();
+                event.alphabetSize = dfa.vocabulary().size();
+                event.peakSubset = peakSubset;
+                event.commit();
+            }
+
+            printAutomaton(dfa);
+            System.out.println("Renamed automaton:");
+            Automaton renamed = dfa.renameTupleStatesToSingleState();
+            index = addAutomaton(renamed);
+            printAutomaton(index);
+        } else {
+            throw new AutomatonAlreadyDeterministicException();
+        }
+        return index;
+    }
+
+    /**
+     * Builds the DFA of the subset construction, whose states are labelled with the sets of
+     * labels of the NFA states they are made of.
+     */
+    private Automaton subsetConstruction(Automaton nfa, boolean hasEpsilon) {
+        List<String> vocabulary = new ArrayList<>(nfa.vocabulary());
+        Map<State, State> closures = null;
+
+        if (hasEpsilon) {
+            vocabulary.remove(Automaton.EPSILON);
+            closures = epsilonClosuresFor(nfa);
+        } else {
+            closures = new HashMap<>();
+            for (State state : nfa.states()) {
+                closures.put(state, state);
             }
-            Automaton dfa = new Automaton("DFA for " + nfa.name(), vocabulary);
+        }
+        Automaton dfa = new Automaton("DFA for " + nfa.name(), vocabulary);
 
-            // Only used to avoid creating duplicate states
-            Set<State> dfaStates = new LinkedHashSet<>();
-            Queue<State> pendingStates = new LinkedList<>();
-            State initialState = new State(nfa.initial());
+        // Only used to avoid creating duplicate states
+        Set<State> dfaStates = new LinkedHashSet<>();
+        Queue<State> pendingStates = new LinkedList<>();
+        State initialState = new State(nfa.initial());
 
-            pendingStates.add(initialState);
-            dfaStates.add(initialState);
-            dfa.setInitialState(initialState);
+        pendingStates.add(initialState);
+        dfaStates.add(initialState);
+        dfa.setInitialState(initialState);
 
-            while (!pendingStates.isEmpty()) {
-                State currentState = pendingStates.poll();
-                List<State> transitions = new ArrayList<>();
+        while (!pendingStates.isEmpty()) {
+            State currentState = pendingStates.poll();
+            List<State> transitions = new ArrayList<>();
 
-                for (String symbol : vocabulary) {
-                    Set<String> toLabels = new TreeSet<>();
-                    State toState = null;
+            for (String symbol : vocabulary) {
+                Set<String> toLabels = new TreeSet<>();
+                State toState = null;
 
-                    for (String label : currentState.labels()) {
-                        State closureState = closures.get(new State(label));
+                for (String label : currentState.labels()) {
+                    State closureState = closures.get(new State(label));
 
-                        for (String closureLabel : closureState.labels()) {
-                            toState = nfa.transitionFrom(new State(closureLabel), symbol);
-                            if (!toState.equals(State.ERROR_STATE)) {
-                                toLabels.addAll(toState.labels());
-                            }
+                    for (String closureLabel : closureState.labels()) {
+                        toState = nfa.transitionFrom(new State(closureLabel), symbol);
+                        if (!toState.equals(State.ERROR_STATE)) {
+                            toLabels.addAll(toState.labels());
                         }
                     }
-                    if (toLabels.isEmpty()) {
-                        toState = State.ERROR_STATE;
-                    } else {
-                        toState = new State(toLabels);
-                    }
-                    transitions.add(toState);
-                    if (!toState.equals(State.ERROR_STATE) && dfaStates.add(toState)) {
-                        pendingStates.add(toState);
-                    }
                 }
-                dfa.addTransitions(currentState, transitions);
+                if (toLabels.isEmpty()) {
+                    toState = State.ERROR_STATE;
+                } else {
+                    toState = new State(toLabels);
+                }
+                transitions.add(toState);
+                if (!toState.equals(State.ERROR_STATE) && dfaStates.add(toState)) {
+                    pendingStates.add(toState);
+                }
             }
+            dfa.addTransitions(currentState, transitions);
+        }
 
-            // Accepting states
-            for (State state : dfa.states()) {
-                boolean accepting = false;
-                for (String stateLabel : state.labels()) {
-                    State stateClosure = closures.get(new State(stateLabel));
-                    for (String label : stateClosure.labels()) {
-                        if (nfa.acceptingStates().contains(new State(label))) {
-                            dfa.addAcceptingState(state);
-                            accepting = true;
-                            break;
-                        }
-                    }
-                    if (accepting)
+        // Accepting states
+        for (State state : dfa.states()) {
+            boolean accepting = false;
+            for (String stateLabel : state.labels()) {
+                State stateClosure = closures.get(new State(stateLabel));
+                for (String label : stateClosure.labels()) {
+                    if (nfa.acceptingStates().contains(new State(label))) {
+                        dfa.addAcceptingState(state);
+                        accepting = true;
                         break;
+                    }
                 }
+                if (accepting)
+                    break;
             }
-
-            printAutomaton(dfa);
-            System.out.println("Renamed automaton:");
-            Automaton renamed = dfa.renameTupleStatesToSingleState();
-            index = addAutomaton(renamed);
-            printAutomaton(index);
-        } else {
-            throw new AutomatonAlreadyDeterministicException();
         }
-        return index;
+        return dfa;
     }
 
     /**
@@ -476,6 +1141,8 @@ public class Controller {
      * @return - the closure map.
      */
     private Map<State, State> epsilonClosuresFor(Automaton nfa) {
+        EpsilonClosureEvent event = new EpsilonClosureEvent();
+        event.begin();
         Map<State, State> closures = new HashMap<>();
         System.out.println("NDFAe closure:");
         for (State state : nfa.states()) {
@@ -484,6 +1151,13 @@ public class Controller {
             System.out.println(state + " --> " + closure);
         }
         System.out.println();
+        event.end();
+        if (event.shouldCommit()) {
+            event.automaton = nfa.name();
+            event.states = nfa.states().size();
+            event.alphabetSize = nfa.vocabulary().size();
+            event.commit();
+        }
         return closures;
     }
 
@@ -494,65 +1168,191 @@ public class Controller {
      *            - the index to the first regular expression tree.
      * @param indexB
      *            - the index to the second regular expression tree.
-     * @return 0 if A == B; -1 if A is in B; 1 if B is in A;
+     * @return a description of how the languages relate.
      */
     public String checkEquivalenceOfRegularLanguages(int indexA, int indexB) {
-        System.out.println("Checking equivalence of " + indexA + " and " + indexB);
-
         String nameA = trees.get(indexA).name();
         String nameB = trees.get(indexB).name();
+        String equality = null;
 
-        Automaton automatonA = trees.get(indexA).getDfa();
-        indexA = automatons.indexOf(automatonA);
-        if (indexA == -1) {
-            indexA = addAutomaton(automatonA);
+        switch (compareRegularLanguages(indexA, indexB)) {
+        case EQUIVALENT:
+            equality = nameA + " \u2261 " + nameB;
+            break;
+        case SUBSET:
+            equality = nameA + " \u2286 " + nameB;
+            break;
+        case SUPERSET:
+            equality = nameB + " \u2286 " + nameA;
+            break;
+        default:
+            equality = nameA + " \u2288 " + nameB + " and " + nameB + " \u2288 " + nameA;
         }
-        try {
-            indexA = minimise(indexA);
-            automatonA = automatons.get(indexA);
-        } catch (AutomatonAlreadyMinimumException e) {
-            System.out.println("Automaton is already minimum.");
-            // removeLastAutomaton();
+        System.out.println(equality);
+        return equality;
+    }
+
+    /**
+     * Checks whether an automaton, deterministic or not, accepts every word over its vocabulary,
+     * without determinising it.
+     *
+     * @param index
+     *            - the index to the automaton in the list of automatons.
+     * @return a shortest word the automaton does not accept, or null if it accepts every word.
+     */
+    public String universalityCounterexample(int index) {
+        Automaton automaton = automatonAt(index);
+        String word = new UniversalityChecker(new IndexedNFA(automaton)).counterexample();
+        if (word == null) {
+            System.out.println(automaton.name() + " accepts every word.");
+        } else {
+            System.out.println(automaton.name() + " does not accept \"" + word + "\"");
+        }
+        return word;
+    }
+
+    public boolean isUniversal(int index) {
+        return universalityCounterexample(index) == null;
+    }
+
+    /**
+     * Checks whether the language of an automaton is included in the language of another, both
+     * deterministic or not, without determinising them.
+     *
+     * @param indexA
+     *            - the index to the automaton whose language may be included.
+     * @param indexB
+     *            - the index to the automaton whose language may include it.
+     * @return true if every word accepted by the first automaton is accepted by the second.
+     */
+    public boolean isIncluded(int indexA, int indexB) {
+        Automaton automatonA = automatonAt(indexA);
+        Automaton automatonB = automatonAt(indexB);
+        String word = new InclusionChecker(new IndexedNFA(automatonA), new IndexedNFA(automatonB)).counterexample();
+        if (word != null) {
+            System.out.println("\"" + word + "\" is accepted by " + automatonA.name() + " but not by "
+                    + automatonB.name());
+        }
+        return word == null;
+    }
+
+    /**
+     * Counts the words an automaton accepts of each length, a character set counting as every
+     * character it denotes. A non-deterministic automaton is determinised first, without adding
+     * the DFA to the list of automatons.
+     *
+     * @param index
+     *            - the index to the automaton in the list of automatons.
+     * @param maxLength
+     *            - the greatest length counted.
+     * @return the number of accepted words of each length from 0 to the given one.
+     * @throws AutomatonTooLargeException
+     *             if the DFA of a non-deterministic automaton would be too large.
+     */
+    public BigInteger[] wordCounts(int index, int maxLength) throws AutomatonTooLargeException {
+        return counterFor(index).countsUpTo(maxLength);
+    }
+
+    public boolean isFinite(int index) throws AutomatonTooLargeException {
+        return counterFor(index).isFinite();
+    }
+
+    /**
+     * Counts all the words an automaton accepts, a character set counting as every character it
+     * denotes.
+     *
+     * @param index
+     *            - the index to the automaton in the list of automatons.
+     * @return the number of words of the language, or null if it is infinite.
+     * @throws AutomatonTooLargeException
+     *             if the DFA of a non-deterministic automaton would be too large.
+     */
+    public BigInteger languageSize(int index) throws AutomatonTooLargeException {
+        Automaton automaton = automatonAt(index);
+        BigInteger size = counterFor(index).total();
+        if (size == null) {
+            System.out.println(automaton.name() + " accepts infinitely many words.");
+        } else {
+            System.out.println(automaton.name() + " accepts " + size + " words.");
         }
+        return size;
+    }
 
-        Automaton automatonB = trees.get(indexB).getDfa();
-        indexB = automatons.indexOf(automatonB);
-        if (indexB == -1) {
-            indexB = addAutomaton(automatonB);
+    private LanguageCounter counterFor(int index) {
+        Automaton automaton = automatonAt(index);
+        IndexedNFA nfa = new IndexedNFA(automaton);
+        if (!nfa.isDeterministic()) {
+            ParallelDeterminiser determiniser = new ParallelDeterminiser(ForkJoinPool.commonPool(),
+                    RegExTree.DEFAULT_STATE_LIMIT);
+            nfa = new IndexedNFA(determiniser.determinise(nfa, "DFA for " + automaton.name()));
         }
+        return new LanguageCounter(nfa);
+    }
+
+    /**
+     * Compares the regular languages denoted by two regular expressions.
+     * 
+     * @param indexA
+     *            - the index to the first regular expression tree.
+     * @param indexB
+     *            - the index to the second regular expression tree.
+     * @return {@link #EQUIVALENT} if A == B; {@link #SUBSET} if A is in B; {@link #SUPERSET} if B
+     *         is in A; {@link #INCOMPARABLE} otherwise.
+     */
+    public int compareRegularLanguages(int indexA, int indexB) {
+        long start = System.nanoTime();
         try {
-            indexB = minimise(indexB);
-            automatonB = automatons.get(indexB);
-        } catch (AutomatonAlreadyMinimumException e) {
-            System.out.println("Automaton is already minimum.");
-            // removeLastAutomaton();
+            return compare(indexA, indexB);
+        } finally {
+            COMPARE.record(start, trees.get(indexA).input() + " , " + trees.get(indexB).input());
         }
+    }
 
-        // automatonB.renameStatesBasedOn(automatonA);
+    private int compare(int indexA, int indexB) {
+        System.out.println("Checking equivalence of " + indexA + " and " + indexB);
 
-        Automaton AminusB = automatons.get(difference(indexA, indexB));
-        AminusB.setName(nameA + " \\ " + nameB);
-        System.out.println(nameA + " \\ " + nameB + ":");
-        printAutomaton(addAutomaton(AminusB));
+        String nameA = trees.get(indexA).name();
+        String nameB = trees.get(indexB).name();
 
-        System.out.println();
-        Automaton BminusA = automatons.get(difference(indexB, indexA));
-        BminusA.setName(nameB + " \\ " + nameA);
-        System.out.println(nameB + " \\ " + nameA + ":");
-        printAutomaton(addAutomaton(BminusA));
-        String equality = null;
+        if (trees.get(indexA).term() == trees.get(indexB).term()) {
+            return EQUIVALENT;
+        }
 
-        if (AminusB.isEmpty() && BminusA.isEmpty()) {
-            equality = nameA + " \u2261 " + nameB;
-        } else if (AminusB.isEmpty() && !BminusA.isEmpty()) {
-            equality = nameA + " \u2286 " + nameB;
-        } else if (!AminusB.isEmpty() && BminusA.isEmpty()) {
-            equality = nameB + " \u2286 " + nameA;
-        } else {
-            equality = nameA + " \u2288 " + nameB + " and " + nameB + " \u2288 " + nameA;
+        String notInB = inclusionCounterexample(indexA, indexB);
+        if (notInB != null) {
+            System.out.println("\"" + notInB + "\" is in " + nameA + " but not in " + nameB);
         }
-        System.out.println(equality);
-        return equality;
+        String notInA = inclusionCounterexample(indexB, indexA);
+        if (notInA != null) {
+            System.out.println("\"" + notInA + "\" is in " + nameB + " but not in " + nameA);
+        }
+
+        if (notInB == null && notInA == null) {
+            return EQUIVALENT;
+        } else if (notInB == null) {
+            return SUBSET;
+        } else if (notInA == null) {
+            return SUPERSET;
+        }
+        return INCOMPARABLE;
+    }
+
+    /**
+     * Looks for a word of the language of a regular expression which is not in the language of
+     * another. The position automata of both are explored together on the fly, so neither is
+     * determinised and no difference automaton is built.
+     *
+     * @param indexA
+     *            - the index to the regular expression whose language may be included.
+     * @param indexB
+     *            - the index to the regular expression whose language may include it.
+     * @return a shortest word in the first language but not in the second, or null if the first
+     *         language is included in the second.
+     */
+    public String inclusionCounterexample(int indexA, int indexB) {
+        IndexedNFA nfaA = new IndexedNFA(trees.get(indexA).convertToNFA());
+        IndexedNFA nfaB = new IndexedNFA(trees.get(indexB).convertToNFA());
+        return new InclusionChecker(nfaA, nfaB).counterexample();
     }
 
     /**
@@ -565,8 +1365,12 @@ public class Controller {
      * @return the index to the new automaton.
      */
     public int difference(int indexA, int indexB) {
+        BooleanOperationEvent event = new BooleanOperationEvent();
+        event.begin();
         System.out.println("Starting difference of " + indexA + " and " + indexB);
-        return intersection(indexA, complement(indexB));
+        int index = intersection(indexA, complement(indexB));
+        commit(event, "difference", indexA, indexB, index);
+        return index;
     }
 
     /**
@@ -580,11 +1384,14 @@ public class Controller {
      * @return the index to the automaton resulting from the intersection.
      */
     public int intersection(int indexA, int indexB) {
+        BooleanOperationEvent event = new BooleanOperationEvent();
+        event.begin();
         System.out.println("Starting intersection of " + indexA + " and " + indexB);
         int index = complement(union(complement(indexA), complement(indexB)));
-        Automaton automaton = automatons.get(index);
+        Automaton automaton = automatonAt(index);
         automaton.setName("DFA " + index + " (" + indexA + " \u2229 " + indexB + ")");
         removeDeadStates(automaton);
+        commit(event, "intersection", indexA, indexB, index);
         return index;
     }
 
@@ -597,17 +1404,20 @@ public class Controller {
      * @return the index to the complemented automaton.
      */
     public int complement(int index) {
+        BooleanOperationEvent event = new BooleanOperationEvent();
+        event.begin();
         System.out.println("Starting complement of " + index);
-        Automaton automaton = automatons.get(index);
+        Automaton automaton = automatonAt(index);
         Automaton complement = null;
 
         if (automaton.isNonDeterministic() || automaton.hasEpsilonTransitions()) {
-            complement = new Automaton(automatons.get(determinise(index)));
+            complement = new Automaton(automatonAt(determinise(index)));
         } else {
             complement = new Automaton(automaton);
         }
 
         complement.makeComplete();
+        forgetMatchers(complement);
 
         Set<State> nonAccepting = new HashSet<>();
         nonAccepting.addAll(complement.states());
@@ -622,14 +1432,17 @@ public class Controller {
         complement.setName("DFA " + newIndex + " (not " + index + ")");
         System.out.println("Complement of " + index + " is now " + newIndex + ":");
         printAutomaton(newIndex);
+        commit(event, "complement", index, -1, newIndex);
 
         return newIndex;
     }
 
     public int union(int indexA, int indexB) {
+        BooleanOperationEvent event = new BooleanOperationEvent();
+        event.begin();
         System.out.println("Starting union of " + indexA + " and " + indexB);
-        Automaton automatonA = new Automaton(automatons.get(indexA));
-        Automaton automatonB = automatons.get(indexB);
+        Automaton automatonA = new Automaton(automatonAt(indexA));
+        Automaton automatonB = automatonAt(indexB);
 
         // Renames the states of B based on states of A
         System.out.println("Renaming states of automaton " + indexB + ":");
@@ -638,10 +1451,12 @@ public class Controller {
         System.out.println("Renamed automaton:");
         printAutomaton(automatonB);
 
-        // Vocabulary
-        Set<String> vocabulary = new LinkedHashSet<>();
-        vocabulary.addAll(automatonA.vocabulary());
-        vocabulary.addAll(automatonB.vocabulary());
+        // Vocabulary, split into blocks both automatons agree on
+        Set<String> symbols = new LinkedHashSet<>();
+        symbols.addAll(automatonA.vocabulary());
+        symbols.addAll(automatonB.vocabulary());
+        symbols.remove(Automaton.EPSILON);
+        Set<String> vocabulary = new LinkedHashSet<>(CharacterClass.partition(symbols));
         vocabulary.add(Automaton.EPSILON);
 
         String name = "NFA " + automatons.size() + " (" + indexA + " \u222A " + indexB + ")";
@@ -712,11 +1527,77 @@ public class Controller {
         int index = addAutomaton(automaton);
         System.out.println("Union of " + indexA + " and " + indexB + " is " + index + ":");
         printAutomaton(index);
+        commit(event, "union", indexA, indexB, index);
         return index;
     }
 
     /**
-     * Copies the transitions from the source automaton to the destination automaton.
+     * Builds the union of any number of automatons directly as a DFA, whose states are the sets of
+     * states the automatons may be in at once. Unlike {@link #union(int, int)}, no state is
+     * renamed, no epsilon move is added and the result needs no determinisation.
+     *
+     * @param indices
+     *            - the indices to the automatons in the list of automatons, deterministic or not.
+     * @return the index to the union.
+     */
+    public int union(List<Integer> indices) {
+        BooleanOperationEvent event = new BooleanOperationEvent();
+        event.begin();
+        System.out.println("Starting union of " + indices);
+        List<IndexedNFA> operands = new ArrayList<>(indices.size());
+        StringBuilder name = new StringBuilder("DFA " + automatons.size() + " (");
+        int statesA = 0;
+        int statesB = 0;
+        for (int i = 0; i < indices.size(); i++) {
+            Automaton operand = automatonAt(indices.get(i));
+            operands.add(new IndexedNFA(operand));
+            name.append(i == 0 ? "" : " \u222A ").append(indices.get(i));
+            if (i == 0) {
+                statesA = operand.states().size();
+            } else {
+                statesB += operand.states().size();
+            }
+        }
+        Automaton automaton = new ProductUnion().union(operands, name.append(')').toString());
+        int index = addAutomaton(automaton);
+        System.out.println("Union of " + indices + " is " + index + ":");
+        printAutomaton(index);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "n-ary union";
+            event.automaton = automaton.name();
+            event.statesA = statesA;
+            event.statesB = statesB;
+            event.states = automaton.states().size();
+            event.alphabetSize = automaton.vocabulary().size();
+            event.commit();
+        }
+        return index;
+    }
+
+    /**
+     * Ends and commits the event of a boolean operation, if it is recorded.
+     * 
+     * @param indexB
+     *            - the index to the second operand, or -1 for the complement.
+     */
+    private void commit(BooleanOperationEvent event, String operation, int indexA, int indexB, int index) {
+        event.end();
+        if (event.shouldCommit()) {
+            Automaton automaton = automatonAt(index);
+            event.operation = operation;
+            event.automaton = automaton.name();
+            event.statesA = automatonAt(indexA).states().size();
+            event.statesB = indexB == -1 ? 0 : automatonAt(indexB).states().size();
+            event.states = automaton.states().size();
+            event.alphabetSize = automaton.vocabulary().size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Copies the transitions from the source automaton to the destination automaton. Each symbol of
+     * the destination takes the transitions of the source symbol covering it.
      * 
      * @param source
      *            - the automaton whose transitions shall be copied.
@@ -724,9 +1605,20 @@ public class Controller {
      *            - the automaton which shall receive the transitions.
      */
     private void copyTransitions(Automaton source, Automaton destination) {
+        List<String> sourceSymbols = new ArrayList<>(destination.vocabulary().size());
+        for (String symbol : destination.vocabulary()) {
+            String sourceSymbol = symbol;
+            for (String candidate : source.vocabulary()) {
+                if (CharacterClass.covers(candidate, symbol)) {
+                    sourceSymbol = candidate;
+                    break;
+                }
+            }
+            sourceSymbols.add(sourceSymbol);
+        }
         for (State state : source.states()) {
             List<State> transitions = new ArrayList<>(destination.vocabulary().size());
-            for (String symbol : destination.vocabulary()) {
+            for (String symbol : sourceSymbols) {
                 transitions.add(new State(source.transitionFrom(state, symbol).labels()));
             }
             destination.addTransitions(new State(state.labels()), transitions);
@@ -741,25 +1633,25 @@ public class Controller {
 
     public void printAutomaton(int index) {
         System.out.println();
-        automatons.get(index).print();
+        automatonAt(index).print();
         System.out.println();
     }
 
     public Vector<String> columnNamesFromAutomaton(int index) {
         Vector<String> columnNames = new Vector<>();
-        for (int i = 0; i < automatons.get(index).vocabulary().size() + 3; i++) {
+        for (int i = 0; i < automatonAt(index).vocabulary().size() + 3; i++) {
             columnNames.add("-");
         }
         // columnNames.add("Initial");
         // columnNames.add("Accepting");
         // columnNames.add("\u03B4");
-        // columnNames.addAll(automatons.get(index).vocabulary());
+        // columnNames.addAll(automatonAt(index).vocabulary());
         return columnNames;
     }
 
     public Vector<Vector<String>> dataFromAutomaton(int index) {
         Vector<Vector<String>> data = new Vector<>();
-        Automaton automaton = automatons.get(index);
+        Automaton automaton = automatonAt(index);
         Vector<String> firstLine = new Vector<>();
         firstLine.add("Initial");
         firstLine.add("Accepting");
@@ -805,6 +1697,14 @@ public class Controller {
 
     public void removeAutomaton(int index) {
         Automaton removedAutomaton = automatons.remove(index);
+        ByteBuffer removedRecord = encodedAutomatons.remove(index);
+        Iterator<ByteBuffer> records = encodedRegexAutomatons.values().iterator();
+        while (removedRecord != null && records.hasNext()) {
+            if (records.next() == removedRecord) {
+                records.remove();
+            }
+        }
+        forgetMatchers(removedAutomaton);
         for (Map.Entry<RegExTree, Automaton> entry : regexToAutomaton.entrySet()) {
             if (entry.getValue().equals(removedAutomaton)) {
                 regexToAutomaton.remove(entry.getKey());
@@ -813,7 +1713,48 @@ public class Controller {
         }
     }
 
+    /**
+     * Drops the matchers and shared DFAs built from an automaton which was changed or removed, so
+     * that no later match answers from its former transitions.
+     */
+    private void forgetMatchers(Automaton automaton) {
+        matchers.remove(automaton);
+        Iterator<Automaton> dfas = derivativeAutomatons.values().iterator();
+        while (dfas.hasNext()) {
+            if (dfas.next() == automaton) {
+                dfas.remove();
+            }
+        }
+    }
+
+    public Automaton automaton(int index) {
+        return automatonAt(index);
+    }
+
+    /**
+     * Returns the name of the automaton, without decoding it if it was restored from a workspace
+     * snapshot and not used yet.
+     */
     public String automatonName(int index) {
+        if (automatons.get(index) == null) {
+            try {
+                return AutomatonCodec.name(encodedAutomatons.get(index));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         return automatons.get(index).name();
     }
+
+    public int automatonCount() {
+        return automatons.size();
+    }
+
+    public int regexCount() {
+        return trees.size();
+    }
+
+    public String regexName(int index) {
+        return trees.get(index).name();
+    }
 }
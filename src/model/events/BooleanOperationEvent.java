@@ -0,0 +1,34 @@
+package model.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("regexanalyser.BooleanOperation")
+@Label("Boolean Operation")
+@Category({ "RegExAnalyser", "Operations" })
+@Description("Union, complement, intersection or difference of automata")
+public class BooleanOperationEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Automaton")
+    @Description("Name of the resulting automaton")
+    public String automaton;
+
+    @Label("States of A")
+    public int statesA;
+
+    @Label("States of B")
+    @Description("Zero for the complement, all the other operands for an n-ary union")
+    public int statesB;
+
+    @Label("States")
+    public int states;
+
+    @Label("Alphabet Size")
+    public int alphabetSize;
+}
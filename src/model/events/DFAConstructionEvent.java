@@ -0,0 +1,31 @@
+package model.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("regexanalyser.DFAConstruction")
+@Label("DFA Construction")
+@Category({ "RegExAnalyser", "Construction" })
+@Description("Conversion of a regular expression into a DFA")
+public class DFAConstructionEvent extends Event {
+
+    @Label("Regular Expression")
+    public String regex;
+
+    @Label("Method")
+    @Description("Threaded tree or derivatives")
+    public String method;
+
+    @Label("States")
+    public int states;
+
+    @Label("Alphabet Size")
+    public int alphabetSize;
+
+    @Label("Peak Subset")
+    @Description("Largest set of tree nodes making up a state, for the threaded tree")
+    public int peakSubset;
+}
@@ -0,0 +1,21 @@
+package model.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("regexanalyser.EpsilonClosure")
+@Label("Epsilon Closure")
+@Category({ "RegExAnalyser", "Construction" })
+public class EpsilonClosureEvent extends Event {
+
+    @Label("Automaton")
+    public String automaton;
+
+    @Label("States")
+    public int states;
+
+    @Label("Alphabet Size")
+    public int alphabetSize;
+}
@@ -0,0 +1,18 @@
+package model.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("regexanalyser.Link")
+@Label("Tree Linking")
+@Category({ "RegExAnalyser", "Construction" })
+@Description("Threading of the nodes of a regular expression tree")
+public class LinkEvent extends Event {
+
+    @Label("Nodes")
+    @Description("Number of leaves of the tree, plus the final lambda node")
+    public int nodes;
+}
@@ -0,0 +1,21 @@
+package model.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("regexanalyser.Parse")
+@Label("Regular Expression Parse")
+@Category({ "RegExAnalyser", "Construction" })
+@Description("Parsing of a regular expression into a threaded tree, linking included")
+public class ParseEvent extends Event {
+
+    @Label("Regular Expression")
+    public String regex;
+
+    @Label("Alphabet Size")
+    @Description("Number of symbols of the vocabulary of the tree")
+    public int alphabetSize;
+}
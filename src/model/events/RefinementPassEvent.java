@@ -0,0 +1,32 @@
+package model.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("regexanalyser.RefinementPass")
+@Label("Minimisation Refinement Pass")
+@Category({ "RegExAnalyser", "Minimisation" })
+@Description("One pass splitting the classes of equivalent states")
+public class RefinementPassEvent extends Event {
+
+    @Label("Automaton")
+    public String automaton;
+
+    @Label("Pass")
+    public int pass;
+
+    @Label("States")
+    public int states;
+
+    @Label("Alphabet Size")
+    public int alphabetSize;
+
+    @Label("Classes Before")
+    public int classesBefore;
+
+    @Label("Classes After")
+    public int classesAfter;
+}
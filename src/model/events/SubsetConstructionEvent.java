@@ -0,0 +1,30 @@
+package model.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("regexanalyser.SubsetConstruction")
+@Label("Subset Construction")
+@Category({ "RegExAnalyser", "Construction" })
+@Description("Determinisation of an automaton")
+public class SubsetConstructionEvent extends Event {
+
+    @Label("Automaton")
+    public String automaton;
+
+    @Label("NFA States")
+    public int nfaStates;
+
+    @Label("DFA States")
+    public int states;
+
+    @Label("Alphabet Size")
+    public int alphabetSize;
+
+    @Label("Peak Subset")
+    @Description("Largest set of NFA states making up a DFA state")
+    public int peakSubset;
+}
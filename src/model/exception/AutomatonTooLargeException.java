@@ -0,0 +1,16 @@
+package model.exception;
+
+public class AutomatonTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int limit;
+
+    public AutomatonTooLargeException(int limit) {
+        this.limit = limit;
+    }
+
+    public String message() {
+        return "The automaton would have more than " + limit + " states.";
+    }
+}
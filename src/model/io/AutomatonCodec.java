@@ -0,0 +1,181 @@
+package model.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+
+/**
+ * Encodes automata of any kind, deterministic or not, as records of a workspace snapshot. A
+ * record starts with the name of the automaton, so the name can be read without decoding the
+ * rest of it.
+ *
+ * <pre>
+ * UTF      name, or "" for none
+ * boolean  minimum
+ * int      vocabulary size, followed by the symbols as UTF
+ * int      state count, followed by each state as its number of labels and the labels
+ * int      initial state, or -1
+ * int      accepting state count, followed by their indices
+ * rows     for each state, the number of targets followed by the targets
+ * </pre>
+ *
+ * A target is the index of a state, -1 for the error state, or -2 followed by a label set for a
+ * set of states of a non-deterministic automaton.
+ */
+public final class AutomatonCodec {
+
+    private static final int ERROR = -1;
+    private static final int LABEL_SET = -2;
+
+    private AutomatonCodec() {
+    }
+
+    public static void encode(Automaton automaton, DataOutputStream out) throws IOException {
+        List<State> states = new ArrayList<>(automaton.states());
+        Map<State, Integer> indices = new HashMap<>();
+        for (int i = 0; i < states.size(); i++) {
+            indices.put(states.get(i), i);
+        }
+
+        out.writeUTF(automaton.name() == null ? "" : automaton.name());
+        out.writeBoolean(automaton.isMinimum());
+        out.writeInt(automaton.vocabulary().size());
+        for (String symbol : automaton.vocabulary()) {
+            out.writeUTF(symbol);
+        }
+        out.writeInt(states.size());
+        for (State state : states) {
+            writeLabels(state, out);
+        }
+        Integer initial = automaton.initial() == null ? null : indices.get(automaton.initial());
+        out.writeInt(initial == null ? ERROR : initial);
+
+        List<Integer> accepting = new ArrayList<>();
+        for (State state : automaton.acceptingStates()) {
+            Integer index = indices.get(state);
+            if (index != null) {
+                accepting.add(index);
+            }
+        }
+        out.writeInt(accepting.size());
+        for (int index : accepting) {
+            out.writeInt(index);
+        }
+
+        for (State state : states) {
+            List<State> toStates = automaton.transitionsFrom(state);
+            out.writeInt(toStates.size());
+            for (State toState : toStates) {
+                Integer index = indices.get(toState);
+                if (index != null) {
+                    out.writeInt(index);
+                } else if (toState == null || toState.equals(State.ERROR_STATE)) {
+                    out.writeInt(ERROR);
+                } else {
+                    out.writeInt(LABEL_SET);
+                    writeLabels(toState, out);
+                }
+            }
+        }
+    }
+
+    private static void writeLabels(State state, DataOutputStream out) throws IOException {
+        out.writeInt(state.labels().size());
+        for (String label : state.labels()) {
+            out.writeUTF(label);
+        }
+    }
+
+    /**
+     * Decodes an automaton from a record, from the position of the buffer to its limit. The
+     * buffer itself is left untouched.
+     */
+    public static Automaton decode(ByteBuffer record) throws IOException {
+        DataInputStream in = input(record);
+        String name = in.readUTF();
+        boolean minimum = in.readBoolean();
+        List<String> vocabulary = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            vocabulary.add(in.readUTF());
+        }
+        Automaton automaton = new Automaton(name.isEmpty() ? null : name, vocabulary);
+
+        List<State> states = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            automaton.nextLabel();
+            states.add(readLabels(in));
+        }
+        int initial = in.readInt();
+        if (initial != ERROR) {
+            automaton.setInitialState(states.get(initial));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            automaton.addAcceptingState(states.get(in.readInt()));
+        }
+
+        for (State state : states) {
+            List<State> toStates = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                int target = in.readInt();
+                if (target == ERROR) {
+                    toStates.add(State.ERROR_STATE);
+                } else if (target == LABEL_SET) {
+                    toStates.add(readLabels(in));
+                } else {
+                    toStates.add(states.get(target));
+                }
+            }
+            automaton.addTransitions(state, toStates);
+        }
+        automaton.setMinimum(minimum);
+        return automaton;
+    }
+
+    private static State readLabels(DataInputStream in) throws IOException {
+        Set<String> labels = new TreeSet<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            labels.add(in.readUTF());
+        }
+        return new State(labels);
+    }
+
+    /**
+     * Reads only the name at the start of a record.
+     *
+     * @return the name of the automaton, or null if it has none.
+     */
+    public static String name(ByteBuffer record) throws IOException {
+        String name = readUTF(record.duplicate());
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * Reads a string written by {@link DataOutputStream#writeUTF(String)}, copying only its own
+     * bytes out of the buffer, and moves the position of the buffer past it.
+     */
+    static String readUTF(ByteBuffer in) throws IOException {
+        int length = 2 + (in.getShort(in.position()) & 0xFFFF);
+        ByteBuffer string = in.slice();
+        string.limit(length);
+        in.position(in.position() + length);
+        return input(string).readUTF();
+    }
+
+    private static DataInputStream input(ByteBuffer record) {
+        ByteBuffer buffer = record.duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
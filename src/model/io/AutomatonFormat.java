@@ -0,0 +1,55 @@
+package model.io;
+
+/**
+ * Layout of the binary automaton format. All values are big endian.
+ *
+ * <pre>
+ * header     int    magic
+ *            short  version
+ *            short  flags
+ *            int    state count
+ *            int    symbol count
+ *            int    initial state, or -1
+ *            int    offset of the transition table
+ *            int    offset of the accepting bitset
+ *            int    offset of the label dictionary, or 0
+ * strings    name, source regular expression (if flagged), symbols
+ * table      state count * symbol count ints, the target state or -1
+ * accepting  one long for every 64 states
+ * labels     for each state, the number of its labels followed by the labels
+ * </pre>
+ *
+ * Strings are written as their length followed by their UTF-16 chars, a length of -1 standing
+ * for null. The transition table starts on an 8 byte boundary.
+ */
+final class AutomatonFormat {
+
+    static final int MAGIC = 0x52584146;
+    static final short VERSION = 1;
+
+    static final short MINIMUM = 1;
+    static final short LABELS = 2;
+    static final short SOURCE = 4;
+
+    static final int HEADER_SIZE = 32;
+    static final int FLAGS = 6;
+    static final int STATE_COUNT = 8;
+    static final int SYMBOL_COUNT = 12;
+    static final int INITIAL = 16;
+    static final int TABLE_OFFSET = 20;
+    static final int ACCEPTING_OFFSET = 24;
+    static final int LABELS_OFFSET = 28;
+
+    static final int NO_STATE = -1;
+
+    private AutomatonFormat() {
+    }
+
+    static long stringSize(String string) {
+        return 4 + (string == null ? 0 : 2L * string.length());
+    }
+
+    static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,163 @@
+package model.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import model.automaton.Automaton;
+import model.matcher.IndexedNFA;
+
+/**
+ * Writes deterministic automata in the binary format described by {@link AutomatonFormat}, to be
+ * loaded back by {@link MappedAutomaton}. The transition table is streamed row by row, so no
+ * copy of it is built in memory.
+ */
+public class AutomatonWriter {
+
+    private boolean writeLabels = true;
+
+    /**
+     * Sets whether the labels of the states are written. Without them the file is smaller, and
+     * the states are labelled anew when the automaton is decoded.
+     */
+    public void setWriteLabels(boolean writeLabels) {
+        this.writeLabels = writeLabels;
+    }
+
+    public void write(Automaton automaton, Path path) throws IOException {
+        write(automaton, null, path);
+    }
+
+    /**
+     * Writes an automaton to a file, replacing it if it exists.
+     *
+     * @param automaton
+     *            - a deterministic automaton.
+     * @param source
+     *            - the regular expression the automaton was built from, or null.
+     * @param path
+     *            - the file to be written.
+     * @throws IllegalArgumentException
+     *             if the automaton is not deterministic, or if the file would be larger than
+     *             {@link Integer#MAX_VALUE} bytes.
+     */
+    public void write(Automaton automaton, String source, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(automaton, source, out);
+        }
+    }
+
+    /**
+     * Writes an automaton to a stream. The stream is flushed but not closed.
+     *
+     * @param automaton
+     *            - a deterministic automaton.
+     * @param source
+     *            - the regular expression the automaton was built from, or null.
+     * @param out
+     *            - the stream to be written.
+     * @throws IllegalArgumentException
+     *             if the automaton is not deterministic, or if the file would be larger than
+     *             {@link Integer#MAX_VALUE} bytes.
+     */
+    public void write(Automaton automaton, String source, OutputStream out) throws IOException {
+        IndexedNFA dfa = new IndexedNFA(automaton);
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Only deterministic automata can be written.");
+        }
+        int stateCount = dfa.stateCount();
+        int symbolCount = dfa.symbolCount();
+
+        long stringsSize = AutomatonFormat.stringSize(automaton.name());
+        if (source != null) {
+            stringsSize += AutomatonFormat.stringSize(source);
+        }
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            stringsSize += AutomatonFormat.stringSize(dfa.symbol(symbol));
+        }
+        long tableOffset = AutomatonFormat.align(AutomatonFormat.HEADER_SIZE + stringsSize);
+        long acceptingOffset = tableOffset + 4L * stateCount * symbolCount;
+        long labelsOffset = acceptingOffset + 8L * ((stateCount + 63) >>> 6);
+        long size = labelsOffset;
+        if (writeLabels) {
+            for (int state = 0; state < stateCount; state++) {
+                size += 4;
+                for (String label : dfa.state(state).labels()) {
+                    size += AutomatonFormat.stringSize(label);
+                }
+            }
+        }
+        // Offsets are written as ints, and a mapped buffer holds at most as many bytes
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The automaton is too large to be written: " + size
+                    + " bytes, more than " + Integer.MAX_VALUE + ".");
+        }
+
+        short flags = 0;
+        if (automaton.isMinimum()) {
+            flags |= AutomatonFormat.MINIMUM;
+        }
+        if (writeLabels) {
+            flags |= AutomatonFormat.LABELS;
+        }
+        if (source != null) {
+            flags |= AutomatonFormat.SOURCE;
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(AutomatonFormat.MAGIC);
+        data.writeShort(AutomatonFormat.VERSION);
+        data.writeShort(flags);
+        data.writeInt(stateCount);
+        data.writeInt(symbolCount);
+        data.writeInt(dfa.initial());
+        data.writeInt((int) tableOffset);
+        data.writeInt((int) acceptingOffset);
+        data.writeInt(writeLabels ? (int) labelsOffset : 0);
+
+        writeString(data, automaton.name());
+        if (source != null) {
+            writeString(data, source);
+        }
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            writeString(data, dfa.symbol(symbol));
+        }
+        while (data.size() < tableOffset) {
+            data.writeByte(0);
+        }
+
+        for (int state = 0; state < stateCount; state++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int[] targets = dfa.targets(state, symbol);
+                data.writeInt(targets.length == 0 ? AutomatonFormat.NO_STATE : targets[0]);
+            }
+        }
+        for (long word : dfa.accepting()) {
+            data.writeLong(word);
+        }
+
+        if (writeLabels) {
+            for (int state = 0; state < stateCount; state++) {
+                Set<String> labels = dfa.state(state).labels();
+                data.writeInt(labels.size());
+                for (String label : labels) {
+                    writeString(data, label);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    private static void writeString(DataOutputStream data, String string) throws IOException {
+        if (string == null) {
+            data.writeInt(-1);
+        } else {
+            data.writeInt(string.length());
+            data.writeChars(string);
+        }
+    }
+}
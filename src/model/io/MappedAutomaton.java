@@ -0,0 +1,229 @@
+package model.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+import model.matcher.Alphabet;
+import model.matcher.Matcher;
+
+/**
+ * A deterministic automaton read from the binary format described by {@link AutomatonFormat}.
+ * Only the header, the name and the symbols are decoded when it is opened, and the targets of the
+ * transition table are checked once; the table and the accepting states are then read in place
+ * from the buffer while matching. A file mapped into memory can therefore serve input as soon as
+ * it is opened, without building the automaton.
+ * <p>
+ * The automaton can still be decoded into an {@link Automaton} for anything but matching.
+ */
+public class MappedAutomaton implements Matcher {
+
+    private final ByteBuffer buffer;
+    private final short flags;
+    private final int stateCount;
+    private final int symbolCount;
+    private final int initial;
+    private final int tableOffset;
+    private final int acceptingOffset;
+    private final int labelsOffset;
+    private final String name;
+    private final String source;
+    private final List<String> symbols;
+    private final Alphabet alphabet;
+
+    /**
+     * Maps a file into memory and opens the automaton it holds. The mapping stays valid after the
+     * file is closed.
+     *
+     * @param path
+     *            - a file written by {@link AutomatonWriter}.
+     * @return the automaton.
+     * @throws IOException
+     *             if the file cannot be read or is not in the expected format.
+     */
+    public static MappedAutomaton open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedAutomaton(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Opens the automaton held by the buffer, from its first byte. The buffer must not be
+     * modified afterwards.
+     *
+     * @throws IOException
+     *             if the buffer is not in the expected format.
+     */
+    public MappedAutomaton(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate();
+        if (buffer.limit() < AutomatonFormat.HEADER_SIZE || buffer.getInt(0) != AutomatonFormat.MAGIC) {
+            throw new IOException("Not an automaton file.");
+        }
+        short version = buffer.getShort(4);
+        if (version != AutomatonFormat.VERSION) {
+            throw new IOException("Unsupported automaton file version " + version + ".");
+        }
+        flags = buffer.getShort(AutomatonFormat.FLAGS);
+        stateCount = buffer.getInt(AutomatonFormat.STATE_COUNT);
+        symbolCount = buffer.getInt(AutomatonFormat.SYMBOL_COUNT);
+        initial = buffer.getInt(AutomatonFormat.INITIAL);
+        tableOffset = buffer.getInt(AutomatonFormat.TABLE_OFFSET);
+        acceptingOffset = buffer.getInt(AutomatonFormat.ACCEPTING_OFFSET);
+        labelsOffset = buffer.getInt(AutomatonFormat.LABELS_OFFSET);
+        long acceptingEnd = acceptingOffset + 8L * ((stateCount + 63) >>> 6);
+        long end = hasLabels() ? labelsOffset : acceptingEnd;
+        if (stateCount < 0 || symbolCount < 0 || initial < AutomatonFormat.NO_STATE || initial >= stateCount
+                || tableOffset < AutomatonFormat.HEADER_SIZE
+                || acceptingOffset != tableOffset + 4L * stateCount * symbolCount || end < acceptingEnd
+                || end > buffer.limit()) {
+            throw corrupted();
+        }
+
+        int[] offset = { AutomatonFormat.HEADER_SIZE };
+        name = readString(offset, tableOffset);
+        source = (flags & AutomatonFormat.SOURCE) != 0 ? readString(offset, tableOffset) : null;
+        symbols = new ArrayList<>(symbolCount);
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            symbols.add(readString(offset, tableOffset));
+        }
+        alphabet = new Alphabet(symbols);
+
+        // Matching reads the table unchecked, so every target must be a state
+        for (int entry = tableOffset; entry < acceptingOffset; entry += 4) {
+            int target = buffer.getInt(entry);
+            if (target < AutomatonFormat.NO_STATE || target >= stateCount) {
+                throw corrupted();
+            }
+        }
+    }
+
+    private static IOException corrupted() {
+        return new IOException("Corrupted automaton file.");
+    }
+
+    /**
+     * Reads a string, which must end before the given limit.
+     */
+    private String readString(int[] offset, int limit) throws IOException {
+        if (offset[0] > limit - 4) {
+            throw corrupted();
+        }
+        int length = buffer.getInt(offset[0]);
+        offset[0] += 4;
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || 2L * length > limit - offset[0]) {
+            throw corrupted();
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(offset[0]);
+            offset[0] += 2;
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        int state = initial;
+        for (int i = 0; i < input.length() && state != AutomatonFormat.NO_STATE; i++) {
+            int symbol = alphabet.indexOf(input.charAt(i));
+            if (symbol == -1) {
+                return false;
+            }
+            state = next(state, symbol);
+        }
+        return state != AutomatonFormat.NO_STATE && isAccepting(state);
+    }
+
+    /**
+     * @return the state reached from the given state through the given symbol, or -1.
+     */
+    public int next(int state, int symbol) {
+        return buffer.getInt((int) (tableOffset + 4 * ((long) state * symbolCount + symbol)));
+    }
+
+    public boolean isAccepting(int state) {
+        return (buffer.getLong(acceptingOffset + 8 * (state >>> 6)) & (1L << state)) != 0;
+    }
+
+    /**
+     * Decodes the whole automaton. States keep their labels if the file has them, and are
+     * labelled anew otherwise.
+     *
+     * @return a new automaton, equal to the one written.
+     * @throws IOException
+     *             if the labels are not in the expected format.
+     */
+    public Automaton toAutomaton() throws IOException {
+        Automaton automaton = new Automaton(name, new ArrayList<>(symbols));
+        List<State> states = new ArrayList<>(stateCount);
+        int offset = labelsOffset;
+        for (int state = 0; state < stateCount; state++) {
+            String label = automaton.nextLabel();
+            if (hasLabels()) {
+                if (offset > buffer.limit() - 4 || buffer.getInt(offset) < 0) {
+                    throw corrupted();
+                }
+                int[] position = { offset + 4 };
+                Set<String> labels = new TreeSet<>();
+                for (int i = buffer.getInt(offset); i > 0; i--) {
+                    labels.add(readString(position, buffer.limit()));
+                }
+                offset = position[0];
+                states.add(new State(labels));
+            } else {
+                states.add(new State(label));
+            }
+        }
+
+        for (int state = 0; state < stateCount; state++) {
+            List<State> toStates = new ArrayList<>(symbolCount);
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int target = next(state, symbol);
+                toStates.add(target == AutomatonFormat.NO_STATE ? State.ERROR_STATE : states.get(target));
+            }
+            automaton.addTransitions(states.get(state), toStates);
+            if (isAccepting(state)) {
+                automaton.addAcceptingState(states.get(state));
+            }
+        }
+        if (initial != AutomatonFormat.NO_STATE) {
+            automaton.setInitialState(states.get(initial));
+        }
+        automaton.setMinimum((flags & AutomatonFormat.MINIMUM) != 0);
+        return automaton;
+    }
+
+    private boolean hasLabels() {
+        return (flags & AutomatonFormat.LABELS) != 0;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the regular expression the automaton was built from, or null.
+     */
+    public String source() {
+        return source;
+    }
+
+    public int stateCount() {
+        return stateCount;
+    }
+
+    public List<String> symbols() {
+        return symbols;
+    }
+}
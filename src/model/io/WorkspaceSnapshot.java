@@ -0,0 +1,101 @@
+package model.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.automaton.Automaton;
+
+/**
+ * A workspace snapshot written by {@link WorkspaceWriter}, mapped into memory. Opening it reads
+ * the regular expressions and finds where each automaton record lies, skipping over the records
+ * themselves; automata are only decoded when asked for.
+ */
+public class WorkspaceSnapshot {
+
+    private final List<String> regexInputs = new ArrayList<>();
+    private final List<String> regexNames = new ArrayList<>();
+    private final List<Integer> regexAutomatons = new ArrayList<>();
+    private final List<ByteBuffer> records = new ArrayList<>();
+
+    /**
+     * Maps a snapshot file into memory. The mapping stays valid after the file is closed, but the
+     * file must not be modified while the snapshot is in use.
+     *
+     * @throws IOException
+     *             if the file cannot be read or is not in the expected format.
+     */
+    public static WorkspaceSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new WorkspaceSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public WorkspaceSnapshot(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        try {
+            if (in.getInt() != WorkspaceWriter.MAGIC) {
+                throw new IOException("Not a workspace file.");
+            }
+            short version = in.getShort();
+            if (version != WorkspaceWriter.VERSION) {
+                throw new IOException("Unsupported workspace file version " + version + ".");
+            }
+            int regexCount = in.getInt();
+            int automatonCount = in.getInt();
+            for (int i = 0; i < regexCount; i++) {
+                regexInputs.add(AutomatonCodec.readUTF(in));
+                String name = AutomatonCodec.readUTF(in);
+                regexNames.add(name.isEmpty() ? null : name);
+                regexAutomatons.add(in.getInt());
+            }
+            for (int i = 0; i < automatonCount; i++) {
+                int length = in.getInt();
+                ByteBuffer record = in.slice();
+                record.limit(length);
+                records.add(record);
+                in.position(in.position() + length);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted workspace file.", e);
+        }
+    }
+
+    public int regexCount() {
+        return regexInputs.size();
+    }
+
+    public String regexInput(int index) {
+        return regexInputs.get(index);
+    }
+
+    public String regexName(int index) {
+        return regexNames.get(index);
+    }
+
+    /**
+     * @return the index of the automaton converted from the regular expression, or -1.
+     */
+    public int regexAutomaton(int index) {
+        return regexAutomatons.get(index);
+    }
+
+    public int automatonCount() {
+        return records.size();
+    }
+
+    /**
+     * @return the encoded automaton, to be decoded by {@link AutomatonCodec}.
+     */
+    public ByteBuffer automatonRecord(int index) {
+        return records.get(index).duplicate();
+    }
+
+    public Automaton automaton(int index) throws IOException {
+        return AutomatonCodec.decode(records.get(index));
+    }
+}
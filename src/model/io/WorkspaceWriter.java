@@ -0,0 +1,102 @@
+package model.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import model.automaton.Automaton;
+
+/**
+ * Streams a workspace snapshot: the regular expressions first, then the automata, each automaton
+ * as a length prefixed record of {@link AutomatonCodec}. Only one automaton is encoded in memory
+ * at a time, and records read from an earlier snapshot can be copied as they are, without being
+ * decoded.
+ *
+ * <pre>
+ * int      magic
+ * short    version
+ * int      regular expression count
+ * int      automaton count
+ * regexes  for each regular expression, its input, name and automaton index (or -1)
+ * records  for each automaton, the length of its record and the record
+ * </pre>
+ */
+public class WorkspaceWriter implements Closeable {
+
+    static final int MAGIC = 0x52584157;
+    static final short VERSION = 1;
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final DataOutputStream out;
+    private int pendingRegexes;
+    private int pendingAutomatons;
+
+    /**
+     * Writes the header of a snapshot. Exactly the given number of regular expressions and then
+     * of automata must be written afterwards.
+     */
+    public WorkspaceWriter(OutputStream out, int regexCount, int automatonCount) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+        this.out.writeInt(regexCount);
+        this.out.writeInt(automatonCount);
+        pendingRegexes = regexCount;
+        pendingAutomatons = automatonCount;
+    }
+
+    /**
+     * @param automatonIndex
+     *            - the index of the automaton converted from the regular expression, or -1.
+     */
+    public void writeRegex(String input, String name, int automatonIndex) throws IOException {
+        if (pendingRegexes == 0) {
+            throw new IllegalStateException("All regular expressions were already written.");
+        }
+        out.writeUTF(input);
+        out.writeUTF(name == null ? "" : name);
+        out.writeInt(automatonIndex);
+        pendingRegexes--;
+    }
+
+    public void writeAutomaton(Automaton automaton) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        AutomatonCodec.encode(automaton, new DataOutputStream(record));
+        beginAutomaton(record.size());
+        record.writeTo(out);
+    }
+
+    /**
+     * Copies a record as it is, from the position of the buffer to its limit.
+     */
+    public void writeEncodedAutomaton(ByteBuffer record) throws IOException {
+        beginAutomaton(record.remaining());
+        ByteBuffer source = record.duplicate();
+        byte[] chunk = new byte[Math.min(source.remaining(), CHUNK_SIZE)];
+        while (source.hasRemaining()) {
+            int length = Math.min(source.remaining(), chunk.length);
+            source.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    private void beginAutomaton(int length) throws IOException {
+        if (pendingRegexes != 0 || pendingAutomatons == 0) {
+            throw new IllegalStateException("No automaton can be written now.");
+        }
+        pendingAutomatons--;
+        out.writeInt(length);
+    }
+
+    /**
+     * Flushes the snapshot and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
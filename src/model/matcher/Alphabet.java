@@ -0,0 +1,97 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import model.regex.CharacterClass;
+
+/**
+ * Maps input characters to the index of the symbol denoting them in an automaton's vocabulary.
+ * Symbols are single characters or character sets, which must not overlap. Symbols denoting no
+ * character (such as the epsilon symbol) are never matched.
+ * <p>
+ * ASCII characters are looked up in a table, any other character by binary search over the
+ * ranges of the symbols.
+ */
+public class Alphabet {
+
+    private static final int ASCII = 128;
+
+    private final int[] ascii;
+    private final char[] firsts;
+    private final char[] lasts;
+    private final int[] indices;
+    private final int size;
+
+    public Alphabet(List<String> symbols) {
+        ascii = new int[ASCII];
+        size = symbols.size();
+        for (int i = 0; i < ASCII; i++) {
+            ascii[i] = -1;
+        }
+
+        List<int[]> ranges = new ArrayList<>();
+        for (int index = 0; index < symbols.size(); index++) {
+            char[] symbolRanges = CharacterClass.ranges(symbols.get(index));
+            for (int i = 0; i < symbolRanges.length; i += 2) {
+                int first = symbolRanges[i];
+                int last = symbolRanges[i + 1];
+                for (int c = first; c <= last && c < ASCII; c++) {
+                    ascii[c] = index;
+                }
+                if (last >= ASCII) {
+                    ranges.add(new int[] { Math.max(first, ASCII), last, index });
+                }
+            }
+        }
+        Collections.sort(ranges, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Integer.compare(a[0], b[0]);
+            }
+        });
+        firsts = new char[ranges.size()];
+        lasts = new char[ranges.size()];
+        indices = new int[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            firsts[i] = (char) ranges.get(i)[0];
+            lasts[i] = (char) ranges.get(i)[1];
+            indices[i] = ranges.get(i)[2];
+        }
+    }
+
+    /**
+     * Returns the symbol index for the given character.
+     *
+     * @param c
+     *            - the input character.
+     * @return the index of the symbol, or -1 if the character is not in the vocabulary.
+     */
+    public int indexOf(char c) {
+        if (c < ASCII) {
+            return ascii[c];
+        }
+        int low = 0;
+        int high = firsts.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (c < firsts[middle]) {
+                high = middle - 1;
+            } else if (c > lasts[middle]) {
+                low = middle + 1;
+            } else {
+                return indices[middle];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of symbols, i.e. the width of a transition row.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,70 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Sets of NFA states none of which is a subset of another. A set is only added if no set of the
+ * antichain is a subset of it, and the sets it is a subset of are then removed.
+ * <p>
+ * Each set is kept in the bucket of its least state, so a subset of a given set can only be in the
+ * buckets of the states of the given set, and a superset only in the buckets up to its least
+ * state. Sets added twice are found by their hash.
+ */
+final class Antichain {
+
+    private static final int EMPTY = -1;
+
+    private final TreeMap<Integer, List<long[]>> buckets = new TreeMap<>();
+    private final Set<StateSet> sets = new HashSet<>();
+
+    /**
+     * Adds a set, unless a subset of it is already in the antichain.
+     *
+     * @return true if the set was added.
+     */
+    boolean add(long[] states) {
+        StateSet key = new StateSet(states);
+        if (sets.contains(key) || buckets.containsKey(EMPTY)) {
+            return false;
+        }
+        int[] members = BitSets.members(states);
+        for (int member : members) {
+            List<long[]> bucket = buckets.get(member);
+            if (bucket != null) {
+                for (long[] other : bucket) {
+                    if (BitSets.isSubset(other, states)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        int least = members.length == 0 ? EMPTY : members[0];
+        if (least == EMPTY) {
+            buckets.clear();
+            sets.clear();
+        } else {
+            for (List<long[]> bucket : buckets.headMap(least, true).values()) {
+                for (Iterator<long[]> it = bucket.iterator(); it.hasNext();) {
+                    long[] other = it.next();
+                    if (BitSets.isSubset(states, other)) {
+                        it.remove();
+                        sets.remove(new StateSet(other));
+                    }
+                }
+            }
+        }
+        List<long[]> bucket = buckets.get(least);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            buckets.put(least, bucket);
+        }
+        bucket.add(states);
+        sets.add(key);
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package model.matcher;
+
+/**
+ * Helpers for state sets stored as plain {@code long[]} words.
+ */
+final class BitSets {
+
+    private BitSets() {
+    }
+
+    static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static void or(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= source[i];
+        }
+    }
+
+    static boolean intersects(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if ((a[i] & b[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isSingleton(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count == 1;
+    }
+
+    static boolean isSubset(long[] subset, long[] set) {
+        for (int i = 0; i < subset.length; i++) {
+            if ((subset[i] & ~set[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the indices of the set bits, in increasing order.
+     */
+    static int[] members(long[] bits) {
+        int size = 0;
+        for (long word : bits) {
+            size += Long.bitCount(word);
+        }
+        int[] members = new int[size];
+        int i = 0;
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                members[i++] = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+            }
+        }
+        return members;
+    }
+}
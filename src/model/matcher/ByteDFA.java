@@ -0,0 +1,277 @@
+package model.matcher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.regex.CharacterClass;
+
+/**
+ * A DFA over the bytes of UTF-8 encoded input, matching raw {@code byte[]} or {@link ByteBuffer}
+ * content without decoding it. It is lowered from a character DFA: every transition through a
+ * character range is replaced by paths through the UTF-8 byte sequences of the range, and the
+ * intermediate states of equal paths are shared. Bytes behaving alike in every state are then
+ * merged into byte classes, which are the columns of the transition table.
+ * <p>
+ * Only characters of the Basic Multilingual Plane are supported. Surrogates never match, and
+ * neither do malformed byte sequences.
+ */
+public class ByteDFA implements Matcher {
+
+    private static final int NO_STATE = -1;
+
+    private final int[] byteClasses;
+    private final int classCount;
+    private final int[] transitions;
+    private final boolean[] accepting;
+    private final int initial;
+
+    /**
+     * Lowers a character DFA into a byte DFA.
+     *
+     * @param dfa
+     *            - the indexed deterministic automaton.
+     * @throws IllegalArgumentException
+     *             if the automaton is not deterministic.
+     */
+    public ByteDFA(IndexedNFA dfa) {
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Only deterministic automata can be lowered to bytes.");
+        }
+        initial = dfa.initial() == -1 ? NO_STATE : dfa.initial();
+
+        // States of the character DFA keep their ids, intermediate states come after them
+        List<int[]> rows = new ArrayList<>();
+        for (int state = 0; state < dfa.stateCount(); state++) {
+            rows.add(null);
+        }
+        Map<List<Sequence>, Integer> shared = new HashMap<>();
+        for (int state = 0; state < dfa.stateCount(); state++) {
+            List<Sequence> sequences = new ArrayList<>();
+            for (int symbol = 0; symbol < dfa.symbolCount(); symbol++) {
+                int[] targets = dfa.targets(state, symbol);
+                if (targets.length == 1) {
+                    char[] ranges = CharacterClass.ranges(dfa.symbol(symbol));
+                    for (int i = 0; i < ranges.length; i += 2) {
+                        encode(ranges[i], ranges[i + 1], targets[0], sequences);
+                    }
+                }
+            }
+            rows.set(state, rowFor(sequences, rows, shared));
+        }
+
+        accepting = new boolean[rows.size()];
+        for (int state = 0; state < dfa.stateCount(); state++) {
+            accepting[state] = dfa.isAccepting(state);
+        }
+
+        // Bytes whose columns are equal in every state share a class
+        byteClasses = new int[256];
+        Map<List<Integer>, Integer> columns = new HashMap<>();
+        for (int b = 0; b < 256; b++) {
+            List<Integer> column = new ArrayList<>(rows.size());
+            for (int[] row : rows) {
+                column.add(row[b]);
+            }
+            Integer byteClass = columns.get(column);
+            if (byteClass == null) {
+                byteClass = columns.size();
+                columns.put(column, byteClass);
+            }
+            byteClasses[b] = byteClass;
+        }
+        classCount = columns.size();
+        transitions = new int[rows.size() * classCount];
+        for (int state = 0; state < rows.size(); state++) {
+            for (int b = 0; b < 256; b++) {
+                transitions[state * classCount + byteClasses[b]] = rows.get(state)[b];
+            }
+        }
+    }
+
+    /**
+     * Builds the row of 256 byte transitions taking the given sequences, creating the
+     * intermediate states needed for the rest of each sequence. Intermediate states are shared
+     * between all rows whenever they are left through the same sequences.
+     */
+    private static int[] rowFor(List<Sequence> sequences, List<int[]> rows, Map<List<Sequence>, Integer> shared) {
+        int[] row = new int[256];
+        Arrays.fill(row, NO_STATE);
+        Map<Integer, List<Sequence>> rests = new HashMap<>();
+        for (Sequence sequence : sequences) {
+            for (int b = sequence.firsts[0]; b <= sequence.lasts[0]; b++) {
+                if (sequence.length() == 1) {
+                    row[b] = sequence.target;
+                } else {
+                    List<Sequence> rest = rests.get(b);
+                    if (rest == null) {
+                        rest = new ArrayList<>();
+                        rests.put(b, rest);
+                    }
+                    rest.add(sequence.rest());
+                }
+            }
+        }
+        for (Map.Entry<Integer, List<Sequence>> entry : rests.entrySet()) {
+            Integer state = shared.get(entry.getValue());
+            if (state == null) {
+                state = rows.size();
+                shared.put(entry.getValue(), state);
+                rows.add(null);
+                rows.set(state, rowFor(entry.getValue(), rows, shared));
+            }
+            row[entry.getKey()] = state;
+        }
+        return row;
+    }
+
+    /**
+     * Splits a character range into UTF-8 byte sequences, each of them a fixed number of byte
+     * ranges, so that a character is in the range if and only if its encoding matches one of the
+     * sequences.
+     */
+    private static void encode(int first, int last, int target, List<Sequence> sequences) {
+        int[] limits = { 0x7F, 0x7FF, Character.MIN_SURROGATE - 1, Character.MAX_SURROGATE, 0xFFFF };
+        for (int limit : limits) {
+            if (first > last) {
+                return;
+            }
+            if (first <= limit) {
+                int end = Math.min(last, limit);
+                if (limit != Character.MAX_SURROGATE) {
+                    split(first, end, target, sequences);
+                }
+                first = end + 1;
+            }
+        }
+    }
+
+    private static void split(int first, int last, int target, List<Sequence> sequences) {
+        int length = utf8Length(first);
+        for (int i = 1; i < length; i++) {
+            int mask = (1 << (6 * i)) - 1;
+            if ((first & ~mask) != (last & ~mask)) {
+                if ((first & mask) != 0) {
+                    split(first, first | mask, target, sequences);
+                    split((first | mask) + 1, last, target, sequences);
+                    return;
+                }
+                if ((last & mask) != mask) {
+                    split(first, (last & ~mask) - 1, target, sequences);
+                    split(last & ~mask, last, target, sequences);
+                    return;
+                }
+            }
+        }
+        byte[] firstBytes = String.valueOf((char) first).getBytes(StandardCharsets.UTF_8);
+        byte[] lastBytes = String.valueOf((char) last).getBytes(StandardCharsets.UTF_8);
+        int[] firsts = new int[length];
+        int[] lasts = new int[length];
+        for (int i = 0; i < length; i++) {
+            firsts[i] = firstBytes[i] & 0xFF;
+            lasts[i] = lastBytes[i] & 0xFF;
+        }
+        sequences.add(new Sequence(firsts, lasts, target));
+    }
+
+    private static int utf8Length(int c) {
+        if (c <= 0x7F) {
+            return 1;
+        }
+        return c <= 0x7FF ? 2 : 3;
+    }
+
+    /**
+     * Matches UTF-8 encoded bytes.
+     *
+     * @param input
+     *            - the buffer holding the bytes.
+     * @param offset
+     *            - the index of the first byte.
+     * @param length
+     *            - the number of bytes.
+     * @return true if the bytes are the encoding of an accepted word.
+     */
+    public boolean matches(byte[] input, int offset, int length) {
+        int state = initial;
+        for (int i = offset; i < offset + length && state != NO_STATE; i++) {
+            state = transitions[state * classCount + byteClasses[input[i] & 0xFF]];
+        }
+        return state != NO_STATE && accepting[state];
+    }
+
+    public boolean matches(byte[] input) {
+        return matches(input, 0, input.length);
+    }
+
+    /**
+     * Matches the remaining bytes of the buffer, from its position to its limit. The position of
+     * the buffer is left untouched.
+     */
+    public boolean matches(ByteBuffer input) {
+        int state = initial;
+        for (int i = input.position(); i < input.limit() && state != NO_STATE; i++) {
+            state = transitions[state * classCount + byteClasses[input.get(i) & 0xFF]];
+        }
+        return state != NO_STATE && accepting[state];
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        return matches(input.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int stateCount() {
+        return accepting.length;
+    }
+
+    /**
+     * @return the number of byte classes, i.e. the width of the transition table.
+     */
+    public int classCount() {
+        return classCount;
+    }
+
+    /**
+     * A sequence of byte ranges leading to a state of the character DFA.
+     */
+    private static final class Sequence {
+        final int[] firsts;
+        final int[] lasts;
+        final int target;
+
+        Sequence(int[] firsts, int[] lasts, int target) {
+            this.firsts = firsts;
+            this.lasts = lasts;
+            this.target = target;
+        }
+
+        int length() {
+            return firsts.length;
+        }
+
+        Sequence rest() {
+            return new Sequence(Arrays.copyOfRange(firsts, 1, firsts.length),
+                    Arrays.copyOfRange(lasts, 1, lasts.length), target);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(firsts) + Arrays.hashCode(lasts)) + target;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Sequence))
+                return false;
+            Sequence other = (Sequence) obj;
+            return target == other.target && Arrays.equals(firsts, other.firsts) && Arrays.equals(lasts, other.lasts);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package model.matcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of a class file writer for {@link BytecodeCompiler}: a constant pool, and a code
+ * buffer with labels for forward and backward branches. Classes are written in version 49, which
+ * needs no stack map frames.
+ */
+final class Bytecode {
+
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int ISTORE = 0x36;
+    static final int IINC = 0x84;
+    static final int IF_ICMPLT = 0xA1;
+    static final int IF_ICMPGT = 0xA3;
+    static final int GOTO = 0xA7;
+    static final int LOOKUPSWITCH = 0xAB;
+    static final int IRETURN = 0xAC;
+    static final int RETURN = 0xB1;
+    static final int INVOKESPECIAL = 0xB7;
+    static final int INVOKEINTERFACE = 0xB9;
+
+    /**
+     * Branch offsets are signed 16 bit values, so no method may be longer than this.
+     */
+    static final int MAX_CODE_SIZE = Short.MAX_VALUE;
+
+    private static final int CLASS_VERSION = 49;
+
+    /* ------ Constant pool -------- */
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolSize = 1;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    private int constant(String key, int tag, int... references) {
+        Integer index = constants.get(key);
+        if (index == null) {
+            index = poolSize++;
+            constants.put(key, index);
+            write(pool, tag);
+            for (int reference : references) {
+                writeShort(pool, reference);
+            }
+        }
+        return index;
+    }
+
+    int utf8(String value) {
+        String key = "U" + value;
+        Integer index = constants.get(key);
+        if (index == null) {
+            index = poolSize++;
+            constants.put(key, index);
+            try {
+                pool.writeByte(1);
+                pool.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return index;
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, 7, name);
+    }
+
+    int integer(int value) {
+        String key = "I" + value;
+        Integer index = constants.get(key);
+        if (index == null) {
+            index = poolSize++;
+            constants.put(key, index);
+            write(pool, 3);
+            try {
+                pool.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return index;
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return constant("N" + name + ":" + descriptor, 12, nameIndex, descriptorIndex);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return constant("M" + owner + "." + name + descriptor, 10, ownerIndex, nameAndType);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return constant("J" + owner + "." + name + descriptor, 11, ownerIndex, nameAndType);
+    }
+
+    /* ------ Code -------- */
+
+    /**
+     * The code of one method. Branches to labels not yet marked are patched when the code is
+     * finished.
+     */
+    static final class Code {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Integer> labels = new ArrayList<>();
+        private final List<int[]> fixups = new ArrayList<>();
+
+        int newLabel() {
+            labels.add(-1);
+            return labels.size() - 1;
+        }
+
+        void mark(int label) {
+            labels.set(label, bytes.size());
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void op(int opcode) {
+            bytes.write(opcode);
+        }
+
+        void op(int opcode, int operand) {
+            bytes.write(opcode);
+            bytes.write(operand);
+        }
+
+        void opShort(int opcode, int operand) {
+            bytes.write(opcode);
+            writeShort(bytes, operand);
+        }
+
+        void iinc(int local, int increment) {
+            bytes.write(IINC);
+            bytes.write(local);
+            bytes.write(increment);
+        }
+
+        void invokeInterface(int method, int argumentSlots) {
+            opShort(INVOKEINTERFACE, method);
+            bytes.write(argumentSlots);
+            bytes.write(0);
+        }
+
+        /**
+         * Pushes an int constant with the shortest instruction that can hold it.
+         */
+        void push(Bytecode bytecode, int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH, value & 0xFF);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                opShort(SIPUSH, value);
+            } else {
+                opShort(LDC_W, bytecode.integer(value));
+            }
+        }
+
+        void branch(int opcode, int label) {
+            int at = bytes.size();
+            bytes.write(opcode);
+            fixups.add(new int[] { at + 1, label, at, 2 });
+            writeShort(bytes, 0);
+        }
+
+        /**
+         * Writes a lookupswitch over sorted keys.
+         */
+        void lookupSwitch(int defaultLabel, int[] keys, int[] keyLabels) {
+            int at = bytes.size();
+            bytes.write(LOOKUPSWITCH);
+            while (bytes.size() % 4 != 0) {
+                bytes.write(0);
+            }
+            fixups.add(new int[] { bytes.size(), defaultLabel, at, 4 });
+            writeInt(bytes, 0);
+            writeInt(bytes, keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                writeInt(bytes, keys[i]);
+                fixups.add(new int[] { bytes.size(), keyLabels[i], at, 4 });
+                writeInt(bytes, 0);
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] code = bytes.toByteArray();
+            for (int[] fixup : fixups) {
+                int offset = labels.get(fixup[1]) - fixup[2];
+                if (fixup[3] == 2) {
+                    code[fixup[0]] = (byte) (offset >> 8);
+                    code[fixup[0] + 1] = (byte) offset;
+                } else {
+                    for (int i = 0; i < 4; i++) {
+                        code[fixup[0] + i] = (byte) (offset >> (24 - 8 * i));
+                    }
+                }
+            }
+            return code;
+        }
+    }
+
+    /* ------ Class file -------- */
+
+    /**
+     * Adds a public method with a Code attribute and no exception table.
+     */
+    void addMethod(String name, String descriptor, Code code, int maxStack, int maxLocals) {
+        ByteArrayOutputStream method = new ByteArrayOutputStream();
+        byte[] bytes = code.toByteArray();
+        writeShort(method, 0x0001);
+        writeShort(method, utf8(name));
+        writeShort(method, utf8(descriptor));
+        writeShort(method, 1);
+        writeShort(method, utf8("Code"));
+        writeInt(method, 12 + bytes.length);
+        writeShort(method, maxStack);
+        writeShort(method, maxLocals);
+        writeInt(method, bytes.length);
+        method.write(bytes, 0, bytes.length);
+        writeShort(method, 0);
+        writeShort(method, 0);
+        methods.add(method.toByteArray());
+    }
+
+    /**
+     * Writes a public final class.
+     */
+    byte[] toClass(String name, String superName, String interfaceName) {
+        int thisClass = classRef(name);
+        int superClass = classRef(superName);
+        int interfaceClass = classRef(interfaceName);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInt(out, 0xCAFEBABE);
+        writeShort(out, 0);
+        writeShort(out, CLASS_VERSION);
+        writeShort(out, poolSize);
+        byte[] constantPool = poolBytes.toByteArray();
+        out.write(constantPool, 0, constantPool.length);
+        writeShort(out, 0x0001 | 0x0010 | 0x0020);
+        writeShort(out, thisClass);
+        writeShort(out, superClass);
+        writeShort(out, 1);
+        writeShort(out, interfaceClass);
+        writeShort(out, 0);
+        writeShort(out, methods.size());
+        for (byte[] method : methods) {
+            out.write(method, 0, method.length);
+        }
+        writeShort(out, 0);
+        return out.toByteArray();
+    }
+
+    private static void write(DataOutputStream out, int value) {
+        try {
+            out.writeByte(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeShort(DataOutputStream out, int value) {
+        try {
+            out.writeShort(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >> 8);
+        out.write(value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value >> 16);
+        writeShort(out, value);
+    }
+}
@@ -0,0 +1,213 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.metrics.Histogram;
+import model.metrics.Metrics;
+import model.regex.CharacterClass;
+
+/**
+ * Compiles a DFA into a class of its own implementing {@link Matcher}. Each state becomes a block
+ * of straight-line code which reads the next character and jumps to the block of the next state:
+ * through a {@code lookupswitch} when the state only moves on single characters, through a binary
+ * search over the character ranges otherwise. The JIT compiles the whole DFA into branches, with
+ * no table lookups left.
+ * <p>
+ * This suits small, hot DFAs best. Branch offsets limit the generated method to 32 kB, so DFAs
+ * with many states or wide transitions cannot be compiled.
+ */
+public final class BytecodeCompiler {
+
+    private static final String MATCHER = "model/matcher/Matcher";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String CHAR_SEQUENCE = "java/lang/CharSequence";
+    private static final int SWITCH_LIMIT = 64;
+
+    private static final int THIS = 0;
+    private static final int INPUT = 1;
+    private static final int INDEX = 2;
+    private static final int LENGTH = 3;
+    private static final int CHAR = 4;
+
+    private static final AtomicInteger classes = new AtomicInteger();
+    private static final Histogram CODE_SIZE = Metrics.histogram("matcher.bytecode.codeSize");
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * Compiles a DFA into a matcher.
+     *
+     * @param dfa
+     *            - the indexed deterministic automaton.
+     * @return a new instance of the generated class.
+     * @throws IllegalArgumentException
+     *             if the automaton is not deterministic, or too large to be compiled.
+     */
+    public static Matcher compile(IndexedNFA dfa) {
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Only deterministic automata can be compiled.");
+        }
+        String name = "model/matcher/CompiledDFA" + classes.incrementAndGet();
+        byte[] classFile = classFile(dfa, name);
+        try {
+            Class<?> matcherClass = new ClassLoader(Matcher.class.getClassLoader()) {
+                Class<?> define() {
+                    return defineClass(null, classFile, 0, classFile.length);
+                }
+            }.define();
+            return (Matcher) matcherClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The generated matcher could not be loaded.", e);
+        }
+    }
+
+    /**
+     * Writes the class file of the matcher of a DFA.
+     */
+    static byte[] classFile(IndexedNFA dfa, String name) {
+        Bytecode bytecode = new Bytecode();
+
+        Bytecode.Code constructor = new Bytecode.Code();
+        constructor.op(Bytecode.ALOAD, THIS);
+        constructor.opShort(Bytecode.INVOKESPECIAL, bytecode.methodRef(OBJECT, "<init>", "()V"));
+        constructor.op(Bytecode.RETURN);
+        bytecode.addMethod("<init>", "()V", constructor, 1, 1);
+
+        Bytecode.Code code = matchesCode(dfa, bytecode);
+        if (code.size() > Bytecode.MAX_CODE_SIZE) {
+            throw new IllegalArgumentException("The automaton is too large to be compiled.");
+        }
+        CODE_SIZE.record(code.size());
+        bytecode.addMethod("matches", "(Ljava/lang/CharSequence;)Z", code, 2, 5);
+        return bytecode.toClass(name, OBJECT, MATCHER);
+    }
+
+    private static Bytecode.Code matchesCode(IndexedNFA dfa, Bytecode bytecode) {
+        int length = bytecode.interfaceMethodRef(CHAR_SEQUENCE, "length", "()I");
+        int charAt = bytecode.interfaceMethodRef(CHAR_SEQUENCE, "charAt", "(I)C");
+        Bytecode.Code code = new Bytecode.Code();
+        int reject = code.newLabel();
+        int[] stateLabels = new int[dfa.stateCount()];
+        for (int state = 0; state < stateLabels.length; state++) {
+            stateLabels[state] = code.newLabel();
+        }
+
+        code.op(Bytecode.ICONST_0);
+        code.op(Bytecode.ISTORE, INDEX);
+        code.op(Bytecode.ALOAD, INPUT);
+        code.invokeInterface(length, 1);
+        code.op(Bytecode.ISTORE, LENGTH);
+        code.branch(Bytecode.GOTO, dfa.initial() == -1 ? reject : stateLabels[dfa.initial()]);
+
+        for (int state = 0; state < stateLabels.length && code.size() <= Bytecode.MAX_CODE_SIZE; state++) {
+            // At the end of the input, accept if the state is accepting
+            int read = code.newLabel();
+            code.mark(stateLabels[state]);
+            code.op(Bytecode.ILOAD, INDEX);
+            code.op(Bytecode.ILOAD, LENGTH);
+            code.branch(Bytecode.IF_ICMPLT, read);
+            code.op(dfa.isAccepting(state) ? Bytecode.ICONST_1 : Bytecode.ICONST_0);
+            code.op(Bytecode.IRETURN);
+
+            code.mark(read);
+            code.op(Bytecode.ALOAD, INPUT);
+            code.op(Bytecode.ILOAD, INDEX);
+            code.invokeInterface(charAt, 2);
+            code.op(Bytecode.ISTORE, CHAR);
+            code.iinc(INDEX, 1);
+
+            List<int[]> ranges = rangesOf(dfa, state, stateLabels);
+            int characters = 0;
+            for (int[] range : ranges) {
+                characters += range[1] - range[0] + 1;
+            }
+            if (characters <= SWITCH_LIMIT) {
+                int[] keys = new int[characters];
+                int[] labels = new int[characters];
+                int key = 0;
+                for (int[] range : ranges) {
+                    for (int c = range[0]; c <= range[1]; c++) {
+                        keys[key] = c;
+                        labels[key++] = range[2];
+                    }
+                }
+                code.op(Bytecode.ILOAD, CHAR);
+                code.lookupSwitch(reject, keys, labels);
+            } else {
+                search(code, bytecode, ranges, 0, ranges.size() - 1, reject);
+            }
+        }
+
+        code.mark(reject);
+        code.op(Bytecode.ICONST_0);
+        code.op(Bytecode.IRETURN);
+        return code;
+    }
+
+    /**
+     * Collects the transitions of a state as sorted, disjoint character ranges, each with the
+     * label of its target state. Adjacent ranges with the same target are merged.
+     */
+    private static List<int[]> rangesOf(IndexedNFA dfa, int state, int[] stateLabels) {
+        List<int[]> ranges = new ArrayList<>();
+        for (int symbol = 0; symbol < dfa.symbolCount(); symbol++) {
+            int[] targets = dfa.targets(state, symbol);
+            if (targets.length == 1) {
+                char[] symbolRanges = CharacterClass.ranges(dfa.symbol(symbol));
+                for (int i = 0; i < symbolRanges.length; i += 2) {
+                    ranges.add(new int[] { symbolRanges[i], symbolRanges[i + 1], stateLabels[targets[0]] });
+                }
+            }
+        }
+        Collections.sort(ranges, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Integer.compare(a[0], b[0]);
+            }
+        });
+        List<int[]> merged = new ArrayList<>();
+        for (int[] range : ranges) {
+            int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last[2] == range[2] && last[1] + 1 == range[0]) {
+                last[1] = range[1];
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Writes a binary search for the character over the given ranges, jumping to the target of
+     * the range holding it or to the reject label if there is none.
+     */
+    private static void search(Bytecode.Code code, Bytecode bytecode, List<int[]> ranges, int low, int high,
+            int reject) {
+        if (low > high) {
+            code.branch(Bytecode.GOTO, reject);
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        int[] range = ranges.get(middle);
+        int below = code.newLabel();
+        int above = code.newLabel();
+
+        code.op(Bytecode.ILOAD, CHAR);
+        code.push(bytecode, range[0]);
+        code.branch(Bytecode.IF_ICMPLT, below);
+        code.op(Bytecode.ILOAD, CHAR);
+        code.push(bytecode, range[1]);
+        code.branch(Bytecode.IF_ICMPGT, above);
+        code.branch(Bytecode.GOTO, range[2]);
+
+        code.mark(below);
+        search(code, bytecode, ranges, low, middle - 1, reject);
+        code.mark(above);
+        search(code, bytecode, ranges, middle + 1, high, reject);
+    }
+}
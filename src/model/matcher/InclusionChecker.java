@@ -0,0 +1,179 @@
+package model.matcher;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import model.regex.CharacterClass;
+
+/**
+ * Checks whether the language of an automaton A is included in the language of an automaton B,
+ * both possibly non-deterministic, without building their difference. The product of A with the
+ * complement of B is explored breadth first, one pair of a state of A and the set of states B may
+ * be in at a time, and the search stops at the first pair where A accepts and B does not: the
+ * word leading to it is in L(A) but not in L(B). The sets of states of B are built only as the
+ * search reaches them, so B is never determinised as a whole.
+ * <p>
+ * A pair is not explored if a pair with the same state of A and a subset of its states of B has
+ * been: every word the larger set rejects, the smaller one rejects too. The pairs kept for each
+ * state of A thus form an antichain, which is usually much smaller than the subsets of B.
+ */
+public class InclusionChecker {
+
+    private final IndexedNFA a;
+    private final IndexedNFA b;
+    private final List<String> blocks;
+    private final int[] symbolsOfA;
+    private final int[] symbolsOfB;
+
+    /**
+     * @param a
+     *            - the automaton whose language may be included.
+     * @param b
+     *            - the automaton whose language may include it.
+     */
+    public InclusionChecker(IndexedNFA a, IndexedNFA b) {
+        this.a = a;
+        this.b = b;
+        // Vocabulary, split into blocks both automatons agree on
+        Set<String> symbols = new LinkedHashSet<>();
+        for (int symbol = 0; symbol < a.symbolCount(); symbol++) {
+            symbols.add(a.symbol(symbol));
+        }
+        for (int symbol = 0; symbol < b.symbolCount(); symbol++) {
+            symbols.add(b.symbol(symbol));
+        }
+        blocks = CharacterClass.partition(symbols);
+        symbolsOfA = new int[blocks.size()];
+        symbolsOfB = new int[blocks.size()];
+        for (int block = 0; block < blocks.size(); block++) {
+            symbolsOfA[block] = a.symbolCovering(blocks.get(block));
+            symbolsOfB[block] = b.symbolCovering(blocks.get(block));
+        }
+    }
+
+    public boolean isIncluded() {
+        return counterexample() == null;
+    }
+
+    /**
+     * Finds a shortest word accepted by A but not by B.
+     *
+     * @return the word, or null if the language of A is included in the language of B.
+     */
+    public String counterexample() {
+        if (a.initial() == -1) {
+            return null;
+        }
+        long[] initialOfB = new long[BitSets.words(b.stateCount())];
+        if (b.initial() != -1) {
+            BitSets.or(initialOfB, b.closure(b.initial()));
+        }
+
+        Map<Integer, Antichain> antichains = new HashMap<>();
+        Queue<Pair> pending = new LinkedList<>();
+        for (int state : BitSets.members(a.closure(a.initial()))) {
+            Pair pair = new Pair(state, initialOfB, null, -1);
+            if (add(antichains, pair)) {
+                if (rejects(pair)) {
+                    return wordOf(pair);
+                }
+                pending.add(pair);
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            Pair pair = pending.poll();
+            for (int block = 0; block < blocks.size(); block++) {
+                if (symbolsOfA[block] == -1) {
+                    continue;
+                }
+                int[] targets = a.targets(pair.state, symbolsOfA[block]);
+                if (targets.length == 0) {
+                    continue;
+                }
+                long[] next = post(pair.states, symbolsOfB[block]);
+                for (int target : targets) {
+                    for (int state : BitSets.members(a.closure(target))) {
+                        Pair successor = new Pair(state, next, pair, block);
+                        if (add(antichains, successor)) {
+                            if (rejects(successor)) {
+                                return wordOf(successor);
+                            }
+                            pending.add(successor);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the closed set of states of B reached from the given ones through a symbol.
+     */
+    private long[] post(long[] states, int symbol) {
+        long[] next = new long[states.length];
+        if (symbol == -1) {
+            return next;
+        }
+        for (int state : BitSets.members(states)) {
+            for (int target : b.targets(state, symbol)) {
+                BitSets.or(next, b.closure(target));
+            }
+        }
+        return next;
+    }
+
+    private boolean rejects(Pair pair) {
+        return a.isAccepting(pair.state) && !BitSets.intersects(pair.states, b.accepting());
+    }
+
+    /**
+     * Adds a pair to the antichain of its state of A.
+     *
+     * @return true if the pair was added, so it is to be explored.
+     */
+    private static boolean add(Map<Integer, Antichain> antichains, Pair pair) {
+        Antichain antichain = antichains.get(pair.state);
+        if (antichain == null) {
+            antichain = new Antichain();
+            antichains.put(pair.state, antichain);
+        }
+        return antichain.add(pair.states);
+    }
+
+    /**
+     * @return the word leading to the pair, a character per block.
+     */
+    private String wordOf(Pair pair) {
+        StringBuilder word = new StringBuilder();
+        for (Pair current = pair; current.parent != null; current = current.parent) {
+            char[] ranges = CharacterClass.ranges(blocks.get(current.block));
+            word.insert(0, ranges.length > 0 ? String.valueOf(ranges[0]) : blocks.get(current.block));
+        }
+        return word.toString();
+    }
+
+    /**
+     * A state of A and the states B may be in after the same word, which is kept through the
+     * pair it was reached from and the block read.
+     */
+    private static final class Pair {
+        final int state;
+        final long[] states;
+        final Pair parent;
+        final int block;
+
+        Pair(int state, long[] states, Pair parent, int block) {
+            this.state = state;
+            this.states = states;
+            this.parent = parent;
+            this.block = block;
+        }
+    }
+}
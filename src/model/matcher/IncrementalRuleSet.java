@@ -0,0 +1,498 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+import model.regex.CharacterClass;
+
+/**
+ * A minimal DFA recognising a set of rules at once, kept up to date as rules are added and
+ * removed. Each state carries the tags of the rules accepting when the input ends in it, and two
+ * states are merged only if they report the same tags after every word.
+ * <p>
+ * A rule is added as the product of the combined DFA with the DFA of the rule. Pairs in which the
+ * rule can no longer accept are the states the combined DFA already had, so only the pairs in
+ * which it still can are new, and only those are refined: they all report the new tag after some
+ * word, so none of them is equivalent to an old state, and the old states, which never reach a new
+ * one, stay as they were.
+ * <p>
+ * Tags are reference counted: adding a rule with a tag already in the set only counts it again,
+ * and the rule is removed once its tag has been removed as many times. Removing a rule may merge
+ * states anywhere, so the whole DFA is refined then.
+ */
+public class IncrementalRuleSet implements Matcher {
+
+    private static final int NO_STATE = -1;
+
+    private List<String> blocks = new ArrayList<>();
+    private Alphabet alphabet = new Alphabet(blocks);
+    private final List<int[]> transitions = new ArrayList<>();
+    private final List<int[]> stateTags = new ArrayList<>();
+    private int initial = NO_STATE;
+
+    private final Map<String, Integer> tagIds = new HashMap<>();
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final List<String> tags = new ArrayList<>();
+
+    /**
+     * Adds a rule, unless a rule with the same tag is already in the set, in which case the tag is
+     * only counted again.
+     *
+     * @param tag
+     *            - the tag reported when the rule matches.
+     * @param dfa
+     *            - the DFA of the rule.
+     * @throws IllegalArgumentException
+     *             if the automaton is not deterministic.
+     */
+    public void add(String tag, IndexedNFA dfa) {
+        Integer count = counts.get(tag);
+        if (count != null) {
+            counts.put(tag, count + 1);
+            return;
+        }
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("The automaton of " + tag + " is not deterministic.");
+        }
+        int tagId = tags.size();
+        tags.add(tag);
+        tagIds.put(tag, tagId);
+        counts.put(tag, 1);
+
+        extendVocabulary(dfa);
+        int[] symbols = new int[blocks.size()];
+        for (int block = 0; block < blocks.size(); block++) {
+            symbols[block] = dfa.symbolCovering(blocks.get(block));
+        }
+        boolean[] live = liveStates(dfa, symbols);
+
+        // Product with the DFA of the rule, over the pairs in which the rule may still accept
+        int first = transitions.size();
+        Map<Long, Integer> pairs = new HashMap<>();
+        List<int[]> pending = new ArrayList<>();
+        int start = initial;
+        if (dfa.initial() != -1 && live[dfa.initial()]) {
+            start = pair(pairs, pending, first, initial, dfa.initial());
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            int state = pending.get(i)[0];
+            int ruleState = pending.get(i)[1];
+            int[] row = new int[blocks.size()];
+            for (int block = 0; block < blocks.size(); block++) {
+                int next = state == NO_STATE ? NO_STATE : transitions.get(state)[block];
+                int[] ruleTargets = symbols[block] == -1 ? new int[0] : dfa.targets(ruleState, symbols[block]);
+                if (ruleTargets.length == 0 || !live[ruleTargets[0]]) {
+                    row[block] = next;
+                } else {
+                    row[block] = pair(pairs, pending, first, next, ruleTargets[0]);
+                }
+            }
+            int[] pairTags = state == NO_STATE ? new int[0] : stateTags.get(state);
+            if (dfa.isAccepting(ruleState)) {
+                pairTags = Arrays.copyOf(pairTags, pairTags.length + 1);
+                pairTags[pairTags.length - 1] = tagId;
+            }
+            transitions.add(row);
+            stateTags.add(pairTags);
+        }
+        initial = start;
+
+        merge(first);
+        removeUnreachableStates();
+    }
+
+    /**
+     * Removes a rule once its tag has been removed as many times as it was added.
+     *
+     * @param tag
+     *            - the tag of the rule.
+     * @return true if the rule is no longer in the set.
+     */
+    public boolean remove(String tag) {
+        Integer count = counts.get(tag);
+        if (count == null) {
+            return true;
+        }
+        if (count > 1) {
+            counts.put(tag, count - 1);
+            return false;
+        }
+        int tagId = tagIds.remove(tag);
+        counts.remove(tag);
+        tags.set(tagId, null);
+        for (int state = 0; state < stateTags.size(); state++) {
+            int[] oldTags = stateTags.get(state);
+            int[] newTags = new int[oldTags.length];
+            int size = 0;
+            for (int id : oldTags) {
+                if (id != tagId) {
+                    newTags[size++] = id;
+                }
+            }
+            stateTags.set(state, Arrays.copyOf(newTags, size));
+        }
+        removeDeadStates();
+        merge(0);
+        removeUnreachableStates();
+        return true;
+    }
+
+    /**
+     * Splits the blocks of the vocabulary so that the symbols of the rule are unions of blocks,
+     * and moves the transitions of the states to the new blocks.
+     */
+    private void extendVocabulary(IndexedNFA dfa) {
+        Set<String> symbols = new LinkedHashSet<>(blocks);
+        for (int symbol = 0; symbol < dfa.symbolCount(); symbol++) {
+            symbols.add(dfa.symbol(symbol));
+        }
+        List<String> newBlocks = CharacterClass.partition(symbols);
+        if (newBlocks.equals(blocks)) {
+            return;
+        }
+        int[] oldBlocks = new int[newBlocks.size()];
+        for (int block = 0; block < newBlocks.size(); block++) {
+            oldBlocks[block] = -1;
+            for (int old = 0; old < blocks.size(); old++) {
+                if (CharacterClass.covers(blocks.get(old), newBlocks.get(block))) {
+                    oldBlocks[block] = old;
+                    break;
+                }
+            }
+        }
+        for (int state = 0; state < transitions.size(); state++) {
+            int[] row = transitions.get(state);
+            int[] newRow = new int[newBlocks.size()];
+            for (int block = 0; block < newBlocks.size(); block++) {
+                newRow[block] = oldBlocks[block] == -1 ? NO_STATE : row[oldBlocks[block]];
+            }
+            transitions.set(state, newRow);
+        }
+        blocks = newBlocks;
+        alphabet = new Alphabet(blocks);
+    }
+
+    /**
+     * @return the states of the rule from which it may still accept.
+     */
+    private static boolean[] liveStates(IndexedNFA dfa, int[] symbols) {
+        boolean[] live = new boolean[dfa.stateCount()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int state = 0; state < dfa.stateCount(); state++) {
+                if (live[state]) {
+                    continue;
+                }
+                boolean reachesAccepting = dfa.isAccepting(state);
+                for (int block = 0; block < symbols.length && !reachesAccepting; block++) {
+                    if (symbols[block] != -1) {
+                        for (int target : dfa.targets(state, symbols[block])) {
+                            reachesAccepting |= live[target];
+                        }
+                    }
+                }
+                if (reachesAccepting) {
+                    live[state] = true;
+                    changed = true;
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * @return the state of the pair of a state of the combined DFA and a state of the rule,
+     *         creating it after the given first new state if it is new.
+     */
+    private static int pair(Map<Long, Integer> pairs, List<int[]> pending, int first, int state, int ruleState) {
+        Long key = ((long) state << 32) | ruleState;
+        Integer id = pairs.get(key);
+        if (id == null) {
+            id = first + pending.size();
+            pairs.put(key, id);
+            pending.add(new int[] { state, ruleState });
+        }
+        return id;
+    }
+
+    /**
+     * Merges the equivalent states from the given one on. The states before it are known to be
+     * pairwise distinct, to be distinct from the others and to reach none of them, so they keep
+     * a class of their own each and only the others are refined.
+     */
+    private void merge(int first) {
+        int size = transitions.size() - first;
+        if (size == 0) {
+            return;
+        }
+        int[] classes = new int[size];
+        Map<Signature, Integer> tagClasses = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            classes[i] = classOf(tagClasses, new Signature(stateTags.get(first + i)));
+        }
+        int count = tagClasses.size();
+        while (count < size) {
+            Map<Signature, Integer> signatures = new HashMap<>();
+            int[] refined = new int[size];
+            for (int i = 0; i < size; i++) {
+                int[] row = transitions.get(first + i);
+                int[] values = new int[row.length + 1];
+                values[0] = classes[i];
+                for (int block = 0; block < row.length; block++) {
+                    int target = row[block];
+                    // Negative for the states which are classes of their own
+                    if (target == NO_STATE) {
+                        values[block + 1] = -1;
+                    } else {
+                        values[block + 1] = target < first ? -2 - target : classes[target - first];
+                    }
+                }
+                refined[i] = classOf(signatures, new Signature(values));
+            }
+            classes = refined;
+            if (signatures.size() == count) {
+                break;
+            }
+            count = signatures.size();
+        }
+        if (count == size) {
+            return;
+        }
+
+        int[] representatives = new int[count];
+        Arrays.fill(representatives, -1);
+        for (int i = 0; i < size; i++) {
+            if (representatives[classes[i]] == -1) {
+                representatives[classes[i]] = first + i;
+            }
+        }
+        List<int[]> mergedTransitions = new ArrayList<>(count);
+        List<int[]> mergedTags = new ArrayList<>(count);
+        for (int representative : representatives) {
+            int[] row = transitions.get(representative).clone();
+            for (int block = 0; block < row.length; block++) {
+                if (row[block] >= first) {
+                    row[block] = first + classes[row[block] - first];
+                }
+            }
+            mergedTransitions.add(row);
+            mergedTags.add(stateTags.get(representative));
+        }
+        transitions.subList(first, transitions.size()).clear();
+        stateTags.subList(first, stateTags.size()).clear();
+        transitions.addAll(mergedTransitions);
+        stateTags.addAll(mergedTags);
+        if (initial >= first) {
+            initial = first + classes[initial - first];
+        }
+    }
+
+    private static int classOf(Map<Signature, Integer> signatures, Signature signature) {
+        Integer id = signatures.get(signature);
+        if (id == null) {
+            id = signatures.size();
+            signatures.put(signature, id);
+        }
+        return id;
+    }
+
+    /**
+     * Turns the transitions to the states from which no tag is reported any more, such as the
+     * states only the removed rule accepted from, into transitions to no state.
+     */
+    private void removeDeadStates() {
+        List<List<Integer>> sources = new ArrayList<>(transitions.size());
+        for (int state = 0; state < transitions.size(); state++) {
+            sources.add(new ArrayList<Integer>());
+        }
+        boolean[] live = new boolean[transitions.size()];
+        Queue<Integer> pending = new LinkedList<>();
+        for (int state = 0; state < transitions.size(); state++) {
+            for (int target : transitions.get(state)) {
+                if (target != NO_STATE) {
+                    sources.get(target).add(state);
+                }
+            }
+            if (stateTags.get(state).length > 0) {
+                live[state] = true;
+                pending.add(state);
+            }
+        }
+        while (!pending.isEmpty()) {
+            for (int source : sources.get(pending.poll())) {
+                if (!live[source]) {
+                    live[source] = true;
+                    pending.add(source);
+                }
+            }
+        }
+        for (int[] row : transitions) {
+            for (int block = 0; block < row.length; block++) {
+                if (row[block] != NO_STATE && !live[row[block]]) {
+                    row[block] = NO_STATE;
+                }
+            }
+        }
+        if (initial != NO_STATE && !live[initial]) {
+            initial = NO_STATE;
+        }
+    }
+
+    /**
+     * Drops the states no longer reachable from the initial state, such as the old initial state
+     * once a rule has been added, and numbers the others again in their order.
+     */
+    private void removeUnreachableStates() {
+        int[] ids = new int[transitions.size()];
+        Arrays.fill(ids, NO_STATE);
+        if (initial != NO_STATE) {
+            Queue<Integer> pending = new LinkedList<>();
+            ids[initial] = 0;
+            pending.add(initial);
+            while (!pending.isEmpty()) {
+                for (int target : transitions.get(pending.poll())) {
+                    if (target != NO_STATE && ids[target] == NO_STATE) {
+                        ids[target] = 0;
+                        pending.add(target);
+                    }
+                }
+            }
+        }
+        int reachable = 0;
+        for (int state = 0; state < ids.length; state++) {
+            if (ids[state] != NO_STATE) {
+                ids[state] = reachable++;
+            }
+        }
+        if (reachable == ids.length) {
+            return;
+        }
+        List<int[]> keptTransitions = new ArrayList<>(reachable);
+        List<int[]> keptTags = new ArrayList<>(reachable);
+        for (int state = 0; state < ids.length; state++) {
+            if (ids[state] != NO_STATE) {
+                int[] row = transitions.get(state);
+                for (int block = 0; block < row.length; block++) {
+                    row[block] = row[block] == NO_STATE ? NO_STATE : ids[row[block]];
+                }
+                keptTransitions.add(row);
+                keptTags.add(stateTags.get(state));
+            }
+        }
+        transitions.clear();
+        transitions.addAll(keptTransitions);
+        stateTags.clear();
+        stateTags.addAll(keptTags);
+        initial = initial == NO_STATE ? NO_STATE : ids[initial];
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        int state = run(input);
+        return state != NO_STATE && stateTags.get(state).length > 0;
+    }
+
+    /**
+     * Runs the input through the combined DFA once.
+     *
+     * @param input
+     *            - the input to be matched.
+     * @return the tags of all rules matching the whole input.
+     */
+    public Set<String> matchAll(CharSequence input) {
+        Set<String> matched = new TreeSet<>();
+        int state = run(input);
+        if (state != NO_STATE) {
+            for (int tagId : stateTags.get(state)) {
+                matched.add(tags.get(tagId));
+            }
+        }
+        return matched;
+    }
+
+    private int run(CharSequence input) {
+        int state = initial;
+        for (int i = 0; i < input.length() && state != NO_STATE; i++) {
+            int symbol = alphabet.indexOf(input.charAt(i));
+            state = symbol == -1 ? NO_STATE : transitions.get(state)[symbol];
+        }
+        return state;
+    }
+
+    /**
+     * Builds the combined DFA as an automaton, whose accepting states are those reporting some
+     * tag.
+     *
+     * @param name
+     *            - the name of the automaton.
+     */
+    public Automaton toAutomaton(String name) {
+        Automaton automaton = new Automaton(name, new ArrayList<>(blocks));
+        State[] states = new State[transitions.size()];
+        for (int state = 0; state < states.length; state++) {
+            states[state] = new State(automaton.nextLabel());
+        }
+        if (initial != NO_STATE) {
+            automaton.setInitialState(states[initial]);
+        }
+        for (int state = 0; state < states.length; state++) {
+            List<State> toStates = new ArrayList<>(blocks.size());
+            for (int target : transitions.get(state)) {
+                toStates.add(target == NO_STATE ? State.ERROR_STATE : states[target]);
+            }
+            automaton.addTransitions(states[state], toStates);
+            if (stateTags.get(state).length > 0) {
+                automaton.addAcceptingState(states[state]);
+            }
+        }
+        return automaton;
+    }
+
+    /**
+     * @return the number of states of the combined DFA.
+     */
+    public int stateCount() {
+        return transitions.size();
+    }
+
+    /**
+     * @return the number of rules in the set, each counted once whatever the count of its tag.
+     */
+    public int ruleCount() {
+        return counts.size();
+    }
+
+    /**
+     * The tags of a state, or the class of a state and the classes of its successors.
+     */
+    private static final class Signature {
+        private final int[] values;
+        private final int hash;
+
+        Signature(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Signature && Arrays.equals(values, ((Signature) obj).values);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+import model.regex.CharacterClass;
+
+/**
+ * An integer indexed snapshot of an {@link Automaton}, deterministic or not, with its epsilon
+ * closures already computed. States are numbered in the order they appear in the automaton and
+ * symbols in the order of its vocabulary, without the epsilon symbol.
+ */
+public class IndexedNFA {
+
+    private final Alphabet alphabet;
+    private final int stateCount;
+    private final int initial;
+    private final long[] accepting;
+    private final int[][][] transitions;
+    private final long[][] closures;
+    private final List<State> states;
+    private final List<String> symbols;
+
+    public IndexedNFA(Automaton automaton) {
+        List<String> symbols = new ArrayList<>(automaton.vocabulary());
+        symbols.remove(Automaton.EPSILON);
+        alphabet = new Alphabet(symbols);
+        this.symbols = symbols;
+        states = new ArrayList<>(automaton.states());
+        stateCount = states.size();
+
+        Map<State, Integer> stateIds = new HashMap<>();
+        Map<String, Integer> labelIds = new HashMap<>();
+        for (int id = 0; id < stateCount; id++) {
+            State state = states.get(id);
+            stateIds.put(state, id);
+            if (state.labels().size() == 1) {
+                labelIds.put(state.labels().iterator().next(), id);
+            }
+        }
+
+        Integer initialId = automaton.initial() == null ? null : stateIds.get(automaton.initial());
+        initial = initialId == null ? -1 : initialId;
+
+        accepting = new long[BitSets.words(stateCount)];
+        for (State state : automaton.acceptingStates()) {
+            Integer id = stateIds.get(state);
+            if (id != null) {
+                BitSets.set(accepting, id);
+            }
+        }
+
+        int epsilonIndex = automaton.vocabulary().indexOf(Automaton.EPSILON);
+        int[][] epsilon = new int[stateCount][];
+        transitions = new int[stateCount][symbols.size()][];
+        for (int id = 0; id < stateCount; id++) {
+            List<State> toStates = automaton.transitionsFrom(states.get(id));
+            int symbol = 0;
+            for (int col = 0; col < toStates.size(); col++) {
+                int[] targets = targetsOf(toStates.get(col), stateIds, labelIds);
+                if (col == epsilonIndex) {
+                    epsilon[id] = targets;
+                } else if (symbol < symbols.size()) {
+                    transitions[id][symbol++] = targets;
+                }
+            }
+            while (symbol < symbols.size()) {
+                transitions[id][symbol++] = new int[0];
+            }
+            if (epsilon[id] == null) {
+                epsilon[id] = new int[0];
+            }
+        }
+        closures = closuresOf(epsilon);
+    }
+
+    /**
+     * Resolves a target state of the transition table into state ids. A target may be a state of
+     * its own or, in non-deterministic automata, a set of single labelled states.
+     */
+    private int[] targetsOf(State toState, Map<State, Integer> stateIds, Map<String, Integer> labelIds) {
+        if (toState == null || toState.equals(State.ERROR_STATE)) {
+            return new int[0];
+        }
+        Integer id = stateIds.get(toState);
+        if (id != null) {
+            return new int[] { id };
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (String label : toState.labels()) {
+            Integer labelId = labelIds.get(label);
+            if (labelId != null) {
+                ids.add(labelId);
+            }
+        }
+        int[] targets = new int[ids.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = ids.get(i);
+        }
+        return targets;
+    }
+
+    private long[][] closuresOf(int[][] epsilon) {
+        long[][] result = new long[stateCount][];
+        int words = BitSets.words(stateCount);
+        for (int id = 0; id < stateCount; id++) {
+            long[] closure = new long[words];
+            Queue<Integer> pending = new LinkedList<>();
+            BitSets.set(closure, id);
+            pending.add(id);
+            while (!pending.isEmpty()) {
+                for (int next : epsilon[pending.poll()]) {
+                    if (!BitSets.get(closure, next)) {
+                        BitSets.set(closure, next);
+                        pending.add(next);
+                    }
+                }
+            }
+            result[id] = closure;
+        }
+        return result;
+    }
+
+    public Alphabet alphabet() {
+        return alphabet;
+    }
+
+    public int stateCount() {
+        return stateCount;
+    }
+
+    public int symbolCount() {
+        return alphabet.size();
+    }
+
+    /**
+     * @return the id of the initial state, or -1 if the automaton has none.
+     */
+    public int initial() {
+        return initial;
+    }
+
+    public boolean isAccepting(int state) {
+        return BitSets.get(accepting, state);
+    }
+
+    /**
+     * @return the accepting states as a bitset. Callers must not modify it.
+     */
+    public long[] accepting() {
+        return accepting;
+    }
+
+    /**
+     * @return the states reached from the given state through the given symbol, without closure.
+     */
+    public int[] targets(int state, int symbol) {
+        return transitions[state][symbol];
+    }
+
+    /**
+     * @return the epsilon closure of the given state as a bitset, including the state itself.
+     *         Callers must not modify it.
+     */
+    public long[] closure(int state) {
+        return closures[state];
+    }
+
+    /**
+     * @return the vocabulary symbol with the given index.
+     */
+    public String symbol(int index) {
+        return symbols.get(index);
+    }
+
+    /**
+     * @return the index of the symbol denoting every character of the block, or -1 if there is
+     *         none.
+     */
+    public int symbolCovering(String block) {
+        for (int symbol = 0; symbol < symbols.size(); symbol++) {
+            if (CharacterClass.covers(symbols.get(symbol), block)) {
+                return symbol;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if no state has epsilon moves or more than one target through a symbol.
+     */
+    public boolean isDeterministic() {
+        for (int state = 0; state < stateCount; state++) {
+            if (!BitSets.isSingleton(closures[state])) {
+                return false;
+            }
+            for (int[] targets : transitions[state]) {
+                if (targets.length > 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public State state(int id) {
+        return states.get(id);
+    }
+}
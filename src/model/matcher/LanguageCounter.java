@@ -0,0 +1,345 @@
+package model.matcher;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.regex.CharacterClass;
+
+/**
+ * Counts the words of the language of a DFA. A symbol of the vocabulary stands for every
+ * character it denotes, so a transition through "[a-z]" counts as 26 words.
+ * <p>
+ * The number of words of length k accepted from each state is computed from the numbers of words
+ * of length k - 1 accepted from its successors, for all states at once. Each step splits the
+ * states into ranges computed in parallel on a {@link ForkJoinPool}. Counts are kept as longs
+ * until one of them overflows, and as {@link BigInteger}s from then on.
+ */
+public class LanguageCounter {
+
+    /**
+     * Number of states counted by one task before the range is split further.
+     */
+    private static final int GRAIN = 512;
+
+    private final ForkJoinPool pool;
+    private final int initial;
+    private final boolean[] accepting;
+    private final int[][] targets;
+    private final long[][] weights;
+
+    public LanguageCounter(IndexedNFA dfa) {
+        this(dfa, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Keeps the states from which some word is accepted and which some word leads to, and merges
+     * the symbols leading from a state to the same state into a single weighted transition.
+     *
+     * @param dfa
+     *            - a deterministic automaton.
+     * @param pool
+     *            - the pool counting the words of each length.
+     * @throws IllegalArgumentException
+     *             if the automaton is not deterministic.
+     */
+    public LanguageCounter(IndexedNFA dfa, ForkJoinPool pool) {
+        if (!dfa.isDeterministic()) {
+            throw new IllegalArgumentException("Words can only be counted on a deterministic automaton.");
+        }
+        this.pool = pool;
+        long[] symbolWeights = new long[dfa.symbolCount()];
+        for (int symbol = 0; symbol < symbolWeights.length; symbol++) {
+            char[] ranges = CharacterClass.ranges(dfa.symbol(symbol));
+            for (int i = 0; i < ranges.length; i += 2) {
+                symbolWeights[symbol] += ranges[i + 1] - ranges[i] + 1;
+            }
+        }
+
+        boolean[] useful = usefulStates(dfa);
+        int[] ids = new int[dfa.stateCount()];
+        int count = 0;
+        for (int state = 0; state < ids.length; state++) {
+            ids[state] = useful[state] ? count++ : -1;
+        }
+        initial = dfa.initial() == -1 ? -1 : ids[dfa.initial()];
+        accepting = new boolean[count];
+        targets = new int[count][];
+        weights = new long[count][];
+        for (int state = 0; state < ids.length; state++) {
+            if (ids[state] == -1) {
+                continue;
+            }
+            int id = ids[state];
+            accepting[id] = dfa.isAccepting(state);
+            Map<Integer, Long> weightTo = new TreeMap<>();
+            for (int symbol = 0; symbol < symbolWeights.length; symbol++) {
+                for (int target : dfa.targets(state, symbol)) {
+                    if (ids[target] != -1 && symbolWeights[symbol] != 0) {
+                        Long weight = weightTo.get(ids[target]);
+                        weightTo.put(ids[target], (weight == null ? 0 : weight) + symbolWeights[symbol]);
+                    }
+                }
+            }
+            targets[id] = new int[weightTo.size()];
+            weights[id] = new long[weightTo.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Long> entry : weightTo.entrySet()) {
+                targets[id][i] = entry.getKey();
+                weights[id][i] = entry.getValue();
+                i++;
+            }
+        }
+    }
+
+    /**
+     * @return the states reachable from the initial state from which some word is accepted.
+     */
+    private static boolean[] usefulStates(IndexedNFA dfa) {
+        boolean[] reachable = new boolean[dfa.stateCount()];
+        List<List<Integer>> sources = new ArrayList<>(dfa.stateCount());
+        for (int state = 0; state < dfa.stateCount(); state++) {
+            sources.add(new ArrayList<Integer>());
+        }
+        Queue<Integer> pending = new LinkedList<>();
+        if (dfa.initial() != -1) {
+            reachable[dfa.initial()] = true;
+            pending.add(dfa.initial());
+        }
+        while (!pending.isEmpty()) {
+            int state = pending.poll();
+            for (int symbol = 0; symbol < dfa.symbolCount(); symbol++) {
+                for (int target : dfa.targets(state, symbol)) {
+                    sources.get(target).add(state);
+                    if (!reachable[target]) {
+                        reachable[target] = true;
+                        pending.add(target);
+                    }
+                }
+            }
+        }
+        boolean[] useful = new boolean[dfa.stateCount()];
+        for (int state = 0; state < dfa.stateCount(); state++) {
+            if (reachable[state] && dfa.isAccepting(state)) {
+                useful[state] = true;
+                pending.add(state);
+            }
+        }
+        while (!pending.isEmpty()) {
+            for (int source : sources.get(pending.poll())) {
+                if (!useful[source]) {
+                    useful[source] = true;
+                    pending.add(source);
+                }
+            }
+        }
+        return useful;
+    }
+
+    /**
+     * Counts the accepted words of each length.
+     *
+     * @param maxLength
+     *            - the greatest length counted.
+     * @return the number of accepted words of each length from 0 to the given one.
+     * @throws IllegalArgumentException
+     *             if the length is negative.
+     */
+    public BigInteger[] countsUpTo(int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Invalid length: " + maxLength);
+        }
+        BigInteger[] counts = new BigInteger[maxLength + 1];
+        Arrays.fill(counts, BigInteger.ZERO);
+        if (initial == -1) {
+            return counts;
+        }
+        int states = accepting.length;
+        long[] words = new long[states];
+        for (int state = 0; state < states; state++) {
+            words[state] = accepting[state] ? 1 : 0;
+        }
+        BigInteger[] bigWords = null;
+        for (int length = 0; length <= maxLength; length++) {
+            if (bigWords == null) {
+                counts[length] = BigInteger.valueOf(words[initial]);
+            } else {
+                counts[length] = bigWords[initial];
+            }
+            if (length == maxLength) {
+                break;
+            }
+            if (bigWords == null) {
+                long[] next = new long[states];
+                LongStep step = new LongStep(words, next, 0, states);
+                pool.invoke(step);
+                if (!step.overflowed()) {
+                    words = next;
+                    continue;
+                }
+                bigWords = new BigInteger[states];
+                for (int state = 0; state < states; state++) {
+                    bigWords[state] = BigInteger.valueOf(words[state]);
+                }
+            }
+            BigInteger[] next = new BigInteger[states];
+            pool.invoke(new BigStep(bigWords, next, 0, states));
+            bigWords = next;
+        }
+        return counts;
+    }
+
+    /**
+     * @return true if the language has finitely many words, that is, if no useful state lies on
+     *         a cycle.
+     */
+    public boolean isFinite() {
+        return topologicalOrder() != null;
+    }
+
+    /**
+     * Counts all the accepted words, from the successors of each state to the state itself.
+     *
+     * @return the number of words of the language, or null if it is infinite.
+     */
+    public BigInteger total() {
+        int[] order = topologicalOrder();
+        if (order == null) {
+            return null;
+        }
+        if (initial == -1) {
+            return BigInteger.ZERO;
+        }
+        BigInteger[] words = new BigInteger[accepting.length];
+        for (int i = order.length - 1; i >= 0; i--) {
+            int state = order[i];
+            BigInteger count = accepting[state] ? BigInteger.ONE : BigInteger.ZERO;
+            for (int j = 0; j < targets[state].length; j++) {
+                count = count.add(BigInteger.valueOf(weights[state][j]).multiply(words[targets[state][j]]));
+            }
+            words[state] = count;
+        }
+        return words[initial];
+    }
+
+    /**
+     * Sorts the useful states so that every transition goes forward.
+     *
+     * @return the states in that order, or null if there is a cycle.
+     */
+    private int[] topologicalOrder() {
+        int states = accepting.length;
+        int[] incoming = new int[states];
+        for (int[] stateTargets : targets) {
+            for (int target : stateTargets) {
+                incoming[target]++;
+            }
+        }
+        int[] order = new int[states];
+        int size = 0;
+        for (int state = 0; state < states; state++) {
+            if (incoming[state] == 0) {
+                order[size++] = state;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            for (int target : targets[order[i]]) {
+                if (--incoming[target] == 0) {
+                    order[size++] = target;
+                }
+            }
+        }
+        return size == states ? order : null;
+    }
+
+    /**
+     * Counts the words of the next length from each state of a range, as longs.
+     */
+    private final class LongStep extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] words;
+        private final long[] next;
+        private final int from;
+        private final int to;
+        private boolean overflowed;
+
+        LongStep(long[] words, long[] next, int from, int to) {
+            this.words = words;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean overflowed() {
+            return overflowed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                LongStep left = new LongStep(words, next, from, middle);
+                LongStep right = new LongStep(words, next, middle, to);
+                invokeAll(left, right);
+                overflowed = left.overflowed || right.overflowed;
+                return;
+            }
+            try {
+                for (int state = from; state < to; state++) {
+                    long count = 0;
+                    for (int i = 0; i < targets[state].length; i++) {
+                        count = Math.addExact(count, Math.multiplyExact(weights[state][i], words[targets[state][i]]));
+                    }
+                    next[state] = count;
+                }
+            } catch (ArithmeticException e) {
+                overflowed = true;
+            }
+        }
+    }
+
+    /**
+     * Counts the words of the next length from each state of a range, as {@link BigInteger}s.
+     */
+    private final class BigStep extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger[] words;
+        private final BigInteger[] next;
+        private final int from;
+        private final int to;
+
+        BigStep(BigInteger[] words, BigInteger[] next, int from, int to) {
+            this.words = words;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BigStep(words, next, from, middle), new BigStep(words, next, middle, to));
+                return;
+            }
+            for (int state = from; state < to; state++) {
+                BigInteger count = BigInteger.ZERO;
+                for (int i = 0; i < targets[state].length; i++) {
+                    count = count.add(BigInteger.valueOf(weights[state][i]).multiply(words[targets[state][i]]));
+                }
+                next[state] = count;
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package model.matcher;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import model.metrics.Counter;
+import model.metrics.HitRatio;
+import model.metrics.Metrics;
+
+/**
+ * Matches input against an NFA by building the equivalent DFA on demand. A DFA state is created
+ * only when some input reaches it, and its transitions are filled in as they are taken. Created
+ * states are kept in a cache of bounded size, which is flushed whenever it gets full, so the
+ * exponential blow-up of the full subset construction never materialises.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class LazyDFAMatcher implements Matcher {
+
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    private static final HitRatio TRANSITIONS = Metrics.hitRatio("matcher.lazyDFA.transitions");
+    private static final Counter FLUSHES = Metrics.counter("matcher.lazyDFA.flushes");
+
+    private final IndexedNFA nfa;
+    private final int cacheSize;
+    private final Map<StateSet, DState> cache;
+    private final DState dead;
+    private DState start;
+    private int flushes;
+
+    public LazyDFAMatcher(IndexedNFA nfa) {
+        this(nfa, DEFAULT_CACHE_SIZE);
+    }
+
+    public LazyDFAMatcher(IndexedNFA nfa, int cacheSize) {
+        if (cacheSize < 2) {
+            throw new IllegalArgumentException("Cache must hold at least two states: " + cacheSize);
+        }
+        this.nfa = nfa;
+        this.cacheSize = cacheSize;
+        cache = new HashMap<>();
+        dead = new DState(new StateSet(new long[BitSets.words(nfa.stateCount())]), false, nfa.symbolCount());
+        Arrays.fill(dead.next, dead);
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        if (nfa.initial() == -1) {
+            return false;
+        }
+        Alphabet alphabet = nfa.alphabet();
+        DState current = start();
+        int taken = 0;
+        int computed = 0;
+        while (current != dead && taken < input.length()) {
+            int symbol = alphabet.indexOf(input.charAt(taken++));
+            if (symbol == -1) {
+                current = dead;
+            } else if (current.next[symbol] != null) {
+                current = current.next[symbol];
+            } else {
+                current = step(current, symbol);
+                computed++;
+            }
+        }
+        TRANSITIONS.add(taken - computed, computed);
+        return current.accepting;
+    }
+
+    /**
+     * @return the number of states currently cached.
+     */
+    public int cachedStates() {
+        return cache.size();
+    }
+
+    /**
+     * @return how many times the cache was flushed because it got full.
+     */
+    public int flushes() {
+        return flushes;
+    }
+
+    private DState start() {
+        if (start == null) {
+            long[] states = new long[BitSets.words(nfa.stateCount())];
+            BitSets.or(states, nfa.closure(nfa.initial()));
+            start = intern(states);
+        }
+        return start;
+    }
+
+    /**
+     * Computes the transition of a DFA state through a symbol and records it in the state.
+     */
+    private DState step(DState from, int symbol) {
+        long[] states = new long[from.states.bits.length];
+        long[] bits = from.states.bits;
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                int state = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                for (int target : nfa.targets(state, symbol)) {
+                    BitSets.or(states, nfa.closure(target));
+                }
+            }
+        }
+        DState to = BitSets.isEmpty(states) ? dead : intern(states);
+        from.next[symbol] = to;
+        return to;
+    }
+
+    private DState intern(long[] states) {
+        StateSet key = new StateSet(states);
+        DState state = cache.get(key);
+        if (state == null) {
+            if (cache.size() >= cacheSize) {
+                // Old states stay valid while still referenced, but nothing new links to them
+                cache.clear();
+                start = null;
+                flushes++;
+                FLUSHES.increment();
+            }
+            state = new DState(key, BitSets.intersects(states, nfa.accepting()), nfa.symbolCount());
+            cache.put(key, state);
+        }
+        return state;
+    }
+
+    private static final class DState {
+        final StateSet states;
+        final boolean accepting;
+        final DState[] next;
+
+        DState(StateSet states, boolean accepting, int symbols) {
+            this.states = states;
+            this.accepting = accepting;
+            this.next = new DState[symbols];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.regex.Literals;
+
+/**
+ * Rejects input lacking the literals every word of the language has before handing it over to
+ * another matcher. The checks rely on {@link String#startsWith}, {@link String#endsWith} and
+ * {@link String#indexOf}, which the JVM already turns into vectorised code.
+ */
+public class LiteralPrefilter implements Matcher {
+
+    private final Matcher matcher;
+    private final String prefix;
+    private final String suffix;
+    private final String required;
+    private final boolean checkRequired;
+
+    public LiteralPrefilter(Literals literals, Matcher matcher) {
+        this.matcher = matcher;
+        prefix = literals.prefix();
+        suffix = literals.suffix();
+        required = literals.required();
+        // The required literal adds nothing when it is the prefix or the suffix
+        checkRequired = !required.isEmpty() && !required.equals(prefix) && !required.equals(suffix);
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        String text = input.toString();
+        if (text.length() < required.length() || !text.startsWith(prefix) || !text.endsWith(suffix)) {
+            return false;
+        }
+        if (checkRequired && text.indexOf(required) == -1) {
+            return false;
+        }
+        return matcher.matches(text);
+    }
+
+    /**
+     * Finds the lines of the text accepted in full by the matcher. Lines are separated by
+     * {@code '\n'}. When a literal is required, the text is searched for it and only the lines
+     * holding an occurrence are matched; all lines in between are skipped unread.
+     *
+     * @param text
+     *            - the lines to be scanned.
+     * @return the matching lines, in order.
+     */
+    public List<String> matchingLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int from = 0;
+        while (from < text.length()) {
+            int lineStart = from;
+            if (!required.isEmpty()) {
+                int found = text.indexOf(required, from);
+                if (found == -1) {
+                    break;
+                }
+                lineStart = text.lastIndexOf('\n', found - 1) + 1;
+                if (lineStart < from) {
+                    lineStart = from;
+                }
+            }
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd == -1) {
+                lineEnd = text.length();
+            }
+            String line = text.substring(lineStart, lineEnd);
+            if (line.startsWith(prefix) && line.endsWith(suffix) && matcher.matches(line)) {
+                lines.add(line);
+            }
+            from = lineEnd + 1;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,16 @@
+package model.matcher;
+
+/**
+ * Decides whether a whole input string belongs to the language of an automaton.
+ */
+public interface Matcher {
+
+    /**
+     * Checks whether the entire input is accepted.
+     * 
+     * @param input
+     *            - the characters to be consumed.
+     * @return true if the input is a word of the language.
+     */
+    boolean matches(CharSequence input);
+}
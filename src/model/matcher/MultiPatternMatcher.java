@@ -0,0 +1,220 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import model.exception.AutomatonTooLargeException;
+import model.regex.CharacterClass;
+import model.regex.Positions;
+import model.regex.RegExTree;
+
+/**
+ * A single DFA recognising several regular expressions at once. Each DFA state is a set of
+ * positions taken from all the regular expressions, and carries the set of patterns that accept
+ * when the input ends in it. One pass over the input therefore reports every matching pattern.
+ * <p>
+ * Match sets repeat across many states, so each distinct set is stored once and states refer to
+ * it by index.
+ */
+public class MultiPatternMatcher implements Matcher {
+
+    private static final int NO_STATE = -1;
+
+    private final Alphabet alphabet;
+    private final int symbolCount;
+    private final int patternCount;
+    private final int[] transitions;
+    private final int[] stateMatches;
+    private final List<BitSet> matchSets;
+
+    public MultiPatternMatcher(List<Positions> patterns) throws AutomatonTooLargeException {
+        this(patterns, RegExTree.DEFAULT_STATE_LIMIT);
+    }
+
+    /**
+     * Builds the combined DFA. Patterns are identified by their index in the given list.
+     *
+     * @param patterns
+     *            - the position sets of each regular expression.
+     * @param stateLimit
+     *            - the maximum number of states of the combined DFA.
+     * @throws AutomatonTooLargeException
+     *             if the combined DFA would have more states than the state limit.
+     */
+    public MultiPatternMatcher(List<Positions> patterns, int stateLimit) throws AutomatonTooLargeException {
+        patternCount = patterns.size();
+
+        // Global numbering of the positions of all patterns
+        int size = 0;
+        for (Positions positions : patterns) {
+            size += positions.size();
+        }
+        int start = size;
+        List<String> leafSymbols = new ArrayList<>(size);
+        int[] owner = new int[size];
+        BitSet[] follow = new BitSet[size + 1];
+        BitSet last = new BitSet(size + 1);
+        follow[start] = new BitSet(size);
+        BitSet nullable = new BitSet(patternCount);
+
+        int offset = 0;
+        for (int pattern = 0; pattern < patternCount; pattern++) {
+            Positions positions = patterns.get(pattern);
+            follow[start].or(shift(positions.first(), offset));
+            if (positions.isNullable()) {
+                nullable.set(pattern);
+            }
+            for (int position = 0; position < positions.size(); position++) {
+                owner[offset + position] = pattern;
+                leafSymbols.add(positions.symbol(position));
+                follow[offset + position] = shift(positions.follow(position), offset);
+            }
+            last.or(shift(positions.last(), offset));
+            offset += positions.size();
+        }
+
+        List<String> symbols = CharacterClass.partition(leafSymbols);
+        alphabet = new Alphabet(symbols);
+        symbolCount = symbols.size();
+        BitSet[] symbolPositions = new BitSet[symbolCount];
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            symbolPositions[symbol] = new BitSet(size);
+            for (int position = 0; position < size; position++) {
+                if (CharacterClass.covers(leafSymbols.get(position), symbols.get(symbol))) {
+                    symbolPositions[symbol].set(position);
+                }
+            }
+        }
+
+        // Subset construction over the positions
+        Map<BitSet, Integer> states = new HashMap<>();
+        Map<BitSet, Integer> matchIndices = new HashMap<>();
+        List<BitSet> compositions = new ArrayList<>();
+        List<Integer> matches = new ArrayList<>();
+        List<int[]> rows = new ArrayList<>();
+        Queue<Integer> pendingStates = new LinkedList<>();
+        matchSets = new ArrayList<>();
+
+        BitSet initial = new BitSet(size + 1);
+        initial.set(start);
+        states.put(initial, 0);
+        compositions.add(initial);
+        pendingStates.add(0);
+
+        while (!pendingStates.isEmpty()) {
+            int state = pendingStates.poll();
+            BitSet composition = compositions.get(state);
+
+            BitSet accepted = new BitSet(patternCount);
+            BitSet reachable = new BitSet(size);
+            for (int p = composition.nextSetBit(0); p >= 0; p = composition.nextSetBit(p + 1)) {
+                reachable.or(follow[p]);
+                if (p == start) {
+                    accepted.or(nullable);
+                } else if (last.get(p)) {
+                    accepted.set(owner[p]);
+                }
+            }
+            Integer matchIndex = matchIndices.get(accepted);
+            if (matchIndex == null) {
+                matchIndex = matchSets.size();
+                matchIndices.put(accepted, matchIndex);
+                matchSets.add(accepted);
+            }
+            matches.add(matchIndex);
+
+            int[] row = new int[symbolCount];
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                BitSet next = (BitSet) reachable.clone();
+                next.and(symbolPositions[symbol]);
+                if (next.isEmpty()) {
+                    row[symbol] = NO_STATE;
+                } else {
+                    Integer nextState = states.get(next);
+                    if (nextState == null) {
+                        if (compositions.size() == stateLimit) {
+                            throw new AutomatonTooLargeException(stateLimit);
+                        }
+                        nextState = compositions.size();
+                        states.put(next, nextState);
+                        compositions.add(next);
+                        pendingStates.add(nextState);
+                    }
+                    row[symbol] = nextState;
+                }
+            }
+            rows.add(row);
+        }
+
+        transitions = new int[rows.size() * symbolCount];
+        stateMatches = new int[rows.size()];
+        for (int state = 0; state < rows.size(); state++) {
+            System.arraycopy(rows.get(state), 0, transitions, state * symbolCount, symbolCount);
+            stateMatches[state] = matches.get(state);
+        }
+    }
+
+    private static BitSet shift(BitSet bits, int offset) {
+        BitSet shifted = new BitSet();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            shifted.set(i + offset);
+        }
+        return shifted;
+    }
+
+    /**
+     * Runs the input through the combined DFA once.
+     *
+     * @param input
+     *            - the input to be matched.
+     * @return the indices of all patterns matching the whole input.
+     */
+    public BitSet matchAll(CharSequence input) {
+        int state = run(input);
+        return state == NO_STATE ? new BitSet(patternCount) : (BitSet) matchSets.get(stateMatches[state]).clone();
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        int state = run(input);
+        return state != NO_STATE && !matchSets.get(stateMatches[state]).isEmpty();
+    }
+
+    private int run(CharSequence input) {
+        int state = 0;
+        for (int i = 0; i < input.length(); i++) {
+            int symbol = alphabet.indexOf(input.charAt(i));
+            if (symbol == -1) {
+                return NO_STATE;
+            }
+            state = transitions[state * symbolCount + symbol];
+            if (state == NO_STATE) {
+                return NO_STATE;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @return the number of states of the combined DFA.
+     */
+    public int stateCount() {
+        return stateMatches.length;
+    }
+
+    /**
+     * @return the number of distinct match sets shared by the states.
+     */
+    public int matchSetCount() {
+        return matchSets.size();
+    }
+
+    public int patternCount() {
+        return patternCount;
+    }
+}
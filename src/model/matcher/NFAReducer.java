@@ -0,0 +1,159 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+
+/**
+ * Shrinks an NFA before it is determinised. The epsilon moves are removed first: a state takes
+ * over the transitions of its epsilon closure, and accepts if a state of the closure does. Only
+ * the states reachable from the initial state are kept, so the states entered through epsilon
+ * moves alone disappear.
+ * <p>
+ * The states are then merged by bisimulation: two states are equivalent if both accept or neither
+ * does and, through each symbol, they reach the same classes of equivalent states. The classes
+ * are refined until no class is split, and each becomes a state of the reduced NFA, which accepts
+ * the same language with at most as many states.
+ */
+public class NFAReducer {
+
+    /**
+     * Reduces an NFA.
+     *
+     * @param nfa
+     *            - the NFA, with or without epsilon moves.
+     * @param name
+     *            - the name of the reduced NFA.
+     * @return the reduced NFA, without epsilon moves, or null if some state of the NFA has more
+     *         than one label, so the states could not be told apart in its transitions.
+     */
+    public Automaton reduce(IndexedNFA nfa, String name) {
+        if (nfa.initial() == -1) {
+            return null;
+        }
+        for (int state = 0; state < nfa.stateCount(); state++) {
+            if (nfa.state(state).labels().size() != 1) {
+                return null;
+            }
+        }
+
+        // Epsilon removal, over the states reachable from the initial state
+        int symbols = nfa.symbolCount();
+        List<Integer> states = new ArrayList<>();
+        Map<Integer, Integer> indices = new HashMap<>();
+        List<long[][]> transitions = new ArrayList<>();
+        List<Boolean> accepting = new ArrayList<>();
+        Queue<Integer> pending = new LinkedList<>();
+        indices.put(nfa.initial(), 0);
+        states.add(nfa.initial());
+        pending.add(nfa.initial());
+        while (!pending.isEmpty()) {
+            int state = pending.poll();
+            long[] closure = nfa.closure(state);
+            long[][] targets = new long[symbols][BitSets.words(nfa.stateCount())];
+            for (int member : BitSets.members(closure)) {
+                for (int symbol = 0; symbol < symbols; symbol++) {
+                    for (int target : nfa.targets(member, symbol)) {
+                        BitSets.set(targets[symbol], target);
+                        if (!indices.containsKey(target)) {
+                            indices.put(target, states.size());
+                            states.add(target);
+                            pending.add(target);
+                        }
+                    }
+                }
+            }
+            transitions.add(targets);
+            accepting.add(BitSets.intersects(closure, nfa.accepting()));
+        }
+
+        // Bisimulation, refining the accepting and non-accepting states
+        int[] classes = new int[states.size()];
+        for (int i = 0; i < states.size(); i++) {
+            classes[i] = accepting.get(i) ? 0 : 1;
+        }
+        int count = 0;
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] refined = new int[states.size()];
+            for (int i = 0; i < states.size(); i++) {
+                List<Integer> signature = new ArrayList<>();
+                signature.add(classes[i]);
+                for (int symbol = 0; symbol < symbols; symbol++) {
+                    Set<Integer> targetClasses = new TreeSet<>();
+                    for (int target : BitSets.members(transitions.get(i)[symbol])) {
+                        targetClasses.add(classes[indices.get(target)]);
+                    }
+                    // Separates the classes reached through consecutive symbols
+                    signature.add(-1);
+                    signature.addAll(targetClasses);
+                }
+                Integer id = signatures.get(signature);
+                if (id == null) {
+                    id = signatures.size();
+                    signatures.put(signature, id);
+                }
+                refined[i] = id;
+            }
+            classes = refined;
+            if (signatures.size() == count) {
+                break;
+            }
+            count = signatures.size();
+        }
+
+        return quotient(nfa, name, states, transitions, accepting, classes, count, indices);
+    }
+
+    /**
+     * Builds the NFA with a state per class, named after the first state of the class.
+     */
+    private Automaton quotient(IndexedNFA nfa, String name, List<Integer> states, List<long[][]> transitions,
+            List<Boolean> accepting, int[] classes, int count, Map<Integer, Integer> indices) {
+        List<String> vocabulary = new ArrayList<>();
+        for (int symbol = 0; symbol < nfa.symbolCount(); symbol++) {
+            vocabulary.add(nfa.symbol(symbol));
+        }
+        Automaton reduced = new Automaton(name, vocabulary);
+
+        int[] representatives = new int[count];
+        Arrays.fill(representatives, -1);
+        for (int i = 0; i < states.size(); i++) {
+            if (representatives[classes[i]] == -1) {
+                representatives[classes[i]] = i;
+            }
+        }
+        String[] labels = new String[count];
+        for (int id = 0; id < count; id++) {
+            labels[id] = nfa.state(states.get(representatives[id])).labels().iterator().next();
+        }
+
+        reduced.setInitialState(new State(labels[classes[0]]));
+        for (int id = 0; id < count; id++) {
+            int representative = representatives[id];
+            List<State> toStates = new ArrayList<>(vocabulary.size());
+            for (long[] targets : transitions.get(representative)) {
+                Set<String> toLabels = new TreeSet<>();
+                for (int target : BitSets.members(targets)) {
+                    toLabels.add(labels[classes[indices.get(target)]]);
+                }
+                toStates.add(toLabels.isEmpty() ? State.ERROR_STATE : new State(toLabels));
+            }
+            State state = new State(labels[id]);
+            reduced.addTransitions(state, toStates);
+            if (accepting.get(representative)) {
+                reduced.addAcceptingState(state);
+            }
+        }
+        return reduced;
+    }
+}
@@ -0,0 +1,122 @@
+package model.matcher;
+
+/**
+ * Matches input by simulating the NFA directly, keeping the set of active states instead of
+ * building any DFA state. Matching always takes time linear in the input length, which makes it
+ * the fallback for automata whose DFA does not fit in a cache.
+ * <p>
+ * Active states are kept twice: a {@code long[]} bitset for membership tests and an {@code int[]}
+ * list for iteration, so each character costs time proportional to the active states only. Both
+ * buffers are allocated once and reused, hence instances are not thread-safe.
+ */
+public class NFASimulationMatcher implements Matcher {
+
+    private final IndexedNFA nfa;
+    private final int[][] closures;
+    private long[] currentBits;
+    private long[] nextBits;
+    private int[] currentList;
+    private int[] nextList;
+
+    public NFASimulationMatcher(IndexedNFA nfa) {
+        this.nfa = nfa;
+        int words = BitSets.words(nfa.stateCount());
+        currentBits = new long[words];
+        nextBits = new long[words];
+        currentList = new int[nfa.stateCount()];
+        nextList = new int[nfa.stateCount()];
+        closures = new int[nfa.stateCount()][];
+        for (int state = 0; state < nfa.stateCount(); state++) {
+            closures[state] = toList(nfa.closure(state));
+        }
+    }
+
+    private static int[] toList(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] list = new int[count];
+        int i = 0;
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                list[i++] = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        if (nfa.initial() == -1) {
+            return false;
+        }
+        Alphabet alphabet = nfa.alphabet();
+        clear(currentBits, currentList, currentList.length);
+        int currentCount = add(currentBits, currentList, 0, closures[nfa.initial()]);
+
+        for (int i = 0; i < input.length() && currentCount > 0; i++) {
+            int symbol = alphabet.indexOf(input.charAt(i));
+            if (symbol == -1) {
+                clear(currentBits, currentList, currentCount);
+                return false;
+            }
+            int nextCount = 0;
+            for (int j = 0; j < currentCount; j++) {
+                for (int target : nfa.targets(currentList[j], symbol)) {
+                    nextCount = add(nextBits, nextList, nextCount, closures[target]);
+                }
+            }
+            clear(currentBits, currentList, currentCount);
+            swap();
+            currentCount = nextCount;
+        }
+
+        boolean accepted = false;
+        for (int j = 0; j < currentCount; j++) {
+            if (nfa.isAccepting(currentList[j])) {
+                accepted = true;
+                break;
+            }
+        }
+        clear(currentBits, currentList, currentCount);
+        return accepted;
+    }
+
+    private static int add(long[] bits, int[] list, int count, int[] states) {
+        for (int state : states) {
+            long mask = 1L << state;
+            if ((bits[state >>> 6] & mask) == 0) {
+                bits[state >>> 6] |= mask;
+                list[count++] = state;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Clears the bitset by resetting only the words holding the listed states.
+     */
+    private static void clear(long[] bits, int[] list, int count) {
+        if (count == list.length) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = 0;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                bits[list[i] >>> 6] = 0;
+            }
+        }
+    }
+
+    private void swap() {
+        long[] bits = currentBits;
+        currentBits = nextBits;
+        nextBits = bits;
+        int[] list = currentList;
+        currentList = nextList;
+        nextList = list;
+    }
+}
@@ -0,0 +1,231 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+import model.exception.AutomatonTooLargeException;
+
+/**
+ * Determinises an NFA by the subset construction, expanding each level of the breadth first
+ * search in parallel on a {@link ForkJoinPool}. Subsets found by several threads at once are
+ * deduplicated in a concurrent table, and the thread which inserts a subset is the only one to
+ * expand it.
+ * <p>
+ * The states are then numbered again by a sequential breadth first search, so the result does not
+ * depend on the scheduling: it is the very automaton the sequential construction of the
+ * controller builds, a subset being the NFA states reached through a symbol, before their epsilon
+ * closure.
+ */
+public class ParallelDeterminiser {
+
+    /**
+     * Number of subsets expanded by one task before the frontier is split further.
+     */
+    private static final int GRAIN = 64;
+
+    private final ForkJoinPool pool;
+    private final int stateLimit;
+
+    public ParallelDeterminiser() {
+        this(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param pool
+     *            - the pool expanding the frontier.
+     * @param stateLimit
+     *            - the maximum number of states of the DFA.
+     */
+    public ParallelDeterminiser(ForkJoinPool pool, int stateLimit) {
+        this.pool = pool;
+        this.stateLimit = stateLimit;
+    }
+
+    /**
+     * Determinises an NFA. The states of the DFA are labelled with the sets of labels of the NFA
+     * states they are made of.
+     *
+     * @param nfa
+     *            - the NFA, whose states must have a single label each.
+     * @param name
+     *            - the name of the DFA.
+     * @return the DFA, without unreachable states.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would have more states than the state limit.
+     */
+    public Automaton determinise(IndexedNFA nfa, String name) throws AutomatonTooLargeException {
+        if (nfa.initial() == -1) {
+            throw new IllegalArgumentException("The automaton has no initial state.");
+        }
+        ConcurrentHashMap<StateSet, Subset> subsets = new ConcurrentHashMap<>();
+        AtomicInteger count = new AtomicInteger(1);
+        long[] initialStates = new long[BitSets.words(nfa.stateCount())];
+        BitSets.set(initialStates, nfa.initial());
+        Subset initial = new Subset(new StateSet(initialStates), nfa.symbolCount());
+        subsets.put(initial.states, initial);
+
+        List<Subset> frontier = new ArrayList<>();
+        frontier.add(initial);
+        while (!frontier.isEmpty()) {
+            frontier = pool.invoke(new Expansion(nfa, subsets, count, frontier, 0, frontier.size()));
+        }
+        return toAutomaton(nfa, initial, name);
+    }
+
+    /**
+     * Numbers the subsets in breadth first order, following the symbols in the order of the
+     * vocabulary, and builds the automaton in that order.
+     */
+    private Automaton toAutomaton(IndexedNFA nfa, Subset initial, String name) {
+        List<String> vocabulary = new ArrayList<>();
+        for (int symbol = 0; symbol < nfa.symbolCount(); symbol++) {
+            vocabulary.add(nfa.symbol(symbol));
+        }
+        Automaton dfa = new Automaton(name, vocabulary);
+
+        List<Subset> order = new ArrayList<>();
+        Queue<Subset> pending = new LinkedList<>();
+        initial.id = 0;
+        order.add(initial);
+        pending.add(initial);
+        while (!pending.isEmpty()) {
+            for (Subset next : pending.poll().next) {
+                if (next != null && next.id == -1) {
+                    next.id = order.size();
+                    order.add(next);
+                    pending.add(next);
+                }
+            }
+        }
+
+        State[] states = new State[order.size()];
+        for (Subset subset : order) {
+            states[subset.id] = new State(labelsOf(nfa, subset.states.bits));
+        }
+        dfa.setInitialState(states[0]);
+        for (Subset subset : order) {
+            List<State> toStates = new ArrayList<>(subset.next.length);
+            for (Subset next : subset.next) {
+                toStates.add(next == null ? State.ERROR_STATE : states[next.id]);
+            }
+            dfa.addTransitions(states[subset.id], toStates);
+            if (subset.accepting) {
+                dfa.addAcceptingState(states[subset.id]);
+            }
+        }
+        return dfa;
+    }
+
+    private static Set<String> labelsOf(IndexedNFA nfa, long[] bits) {
+        Set<String> labels = new TreeSet<>();
+        for (int state : BitSets.members(bits)) {
+            labels.addAll(nfa.state(state).labels());
+        }
+        return labels;
+    }
+
+    /**
+     * A state of the DFA. Its transitions are written by the one thread expanding it, and read
+     * once the whole construction is over.
+     */
+    private static final class Subset {
+        final StateSet states;
+        final Subset[] next;
+        boolean accepting;
+        int id = -1;
+
+        Subset(StateSet states, int symbols) {
+            this.states = states;
+            this.next = new Subset[symbols];
+        }
+    }
+
+    /**
+     * Expands a range of the frontier, and returns the subsets it found first.
+     */
+    private final class Expansion extends RecursiveTask<List<Subset>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IndexedNFA nfa;
+        private final ConcurrentHashMap<StateSet, Subset> subsets;
+        private final AtomicInteger count;
+        private final List<Subset> frontier;
+        private final int from;
+        private final int to;
+
+        Expansion(IndexedNFA nfa, ConcurrentHashMap<StateSet, Subset> subsets, AtomicInteger count,
+                List<Subset> frontier, int from, int to) {
+            this.nfa = nfa;
+            this.subsets = subsets;
+            this.count = count;
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Subset> compute() {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                Expansion left = new Expansion(nfa, subsets, count, frontier, from, middle);
+                left.fork();
+                List<Subset> found = new Expansion(nfa, subsets, count, frontier, middle, to).compute();
+                List<Subset> leftFound = left.join();
+                leftFound.addAll(found);
+                return leftFound;
+            }
+            List<Subset> found = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                expand(frontier.get(i), found);
+            }
+            return found;
+        }
+
+        private void expand(Subset subset, List<Subset> found) {
+            int words = subset.states.bits.length;
+            long[] closed = new long[words];
+            for (int member : BitSets.members(subset.states.bits)) {
+                BitSets.or(closed, nfa.closure(member));
+            }
+            subset.accepting = BitSets.intersects(closed, nfa.accepting());
+
+            int[] members = BitSets.members(closed);
+            for (int symbol = 0; symbol < subset.next.length; symbol++) {
+                long[] states = new long[words];
+                for (int member : members) {
+                    for (int state : nfa.targets(member, symbol)) {
+                        BitSets.set(states, state);
+                    }
+                }
+                if (BitSets.isEmpty(states)) {
+                    continue;
+                }
+                StateSet key = new StateSet(states);
+                Subset next = subsets.get(key);
+                if (next == null) {
+                    Subset created = new Subset(key, subset.next.length);
+                    next = subsets.putIfAbsent(key, created);
+                    if (next == null) {
+                        if (count.incrementAndGet() > stateLimit) {
+                            throw new AutomatonTooLargeException(stateLimit);
+                        }
+                        found.add(created);
+                        next = created;
+                    }
+                }
+                subset.next[symbol] = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+import model.events.RefinementPassEvent;
+
+/**
+ * Splits the states of a DFA into classes of equivalent states by iterated signature refinement.
+ * Each round gives every state the signature made of its class and the classes of its successors,
+ * one per symbol, and the states sharing a signature form a class of the next round. Signatures
+ * are computed and numbered in parallel on a {@link ForkJoinPool}, a range of states per task, and
+ * the rounds go on until the number of classes stops growing.
+ * <p>
+ * As in the sequential refinement of the controller, the error state belongs to no class: a state
+ * with a transition to it is never equivalent to another state. The classes are therefore the
+ * very ones the sequential refinement ends with, whatever the scheduling.
+ */
+public class ParallelMinimiser {
+
+    /**
+     * Number of states given a signature by one task before the range is split further.
+     */
+    private static final int GRAIN = 256;
+
+    private final ForkJoinPool pool;
+
+    public ParallelMinimiser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool
+     *            - the pool computing the signatures.
+     */
+    public ParallelMinimiser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the classes of equivalent states of a DFA.
+     *
+     * @param dfa
+     *            - a complete or partial DFA.
+     * @return the classes, in the order of their first state in the automaton, each holding its
+     *         states in the order of the automaton.
+     */
+    public List<List<State>> partition(Automaton dfa) {
+        List<State> states = new ArrayList<>(dfa.states());
+        int symbols = dfa.vocabulary().size();
+        Map<State, Integer> indices = new HashMap<>();
+        for (int i = 0; i < states.size(); i++) {
+            indices.put(states.get(i), i);
+        }
+        int[][] next = new int[states.size()][symbols];
+        int[] classes = new int[states.size()];
+        int accepting = 0;
+        for (int i = 0; i < states.size(); i++) {
+            List<State> toStates = dfa.transitionsFrom(states.get(i));
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                Integer to = indices.get(toStates.get(symbol));
+                next[i][symbol] = to == null ? -1 : to;
+            }
+            if (dfa.acceptingStates().contains(states.get(i))) {
+                accepting++;
+            } else {
+                classes[i] = 1;
+            }
+        }
+        int count = (accepting > 0 ? 1 : 0) + (accepting < states.size() ? 1 : 0);
+
+        int pass = 0;
+        while (count < states.size()) {
+            RefinementPassEvent event = new RefinementPassEvent();
+            event.begin();
+            ConcurrentHashMap<Signature, Integer> signatures = new ConcurrentHashMap<>();
+            int[] refined = new int[states.size()];
+            pool.invoke(new Refinement(next, classes, refined, signatures, new AtomicInteger(), 0, states.size()));
+            int classesBefore = count;
+            count = signatures.size();
+            classes = refined;
+            event.end();
+            pass++;
+            if (event.shouldCommit()) {
+                event.automaton = dfa.name();
+                event.pass = pass;
+                event.states = states.size();
+                event.alphabetSize = symbols;
+                event.classesBefore = classesBefore;
+                event.classesAfter = count;
+                event.commit();
+            }
+            // Each round refines the last, so no new class means no class was split
+            if (count == classesBefore) {
+                break;
+            }
+        }
+
+        Map<Integer, List<State>> partition = new LinkedHashMap<>();
+        for (int i = 0; i < states.size(); i++) {
+            List<State> equivalentClass = partition.get(classes[i]);
+            if (equivalentClass == null) {
+                equivalentClass = new ArrayList<>();
+                partition.put(classes[i], equivalentClass);
+            }
+            equivalentClass.add(states.get(i));
+        }
+        return new ArrayList<>(partition.values());
+    }
+
+    /**
+     * The class of a state and the classes of its successors. A state with a transition to the
+     * error state has a signature of its own.
+     */
+    private static final class Signature {
+        private final int[] values;
+        private final int hash;
+
+        Signature(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Signature && Arrays.equals(values, ((Signature) obj).values);
+        }
+    }
+
+    /**
+     * Gives the states of a range the class of their signature in the next round.
+     */
+    private static final class Refinement extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] next;
+        private final int[] classes;
+        private final int[] refined;
+        private final ConcurrentHashMap<Signature, Integer> signatures;
+        private final AtomicInteger ids;
+        private final int from;
+        private final int to;
+
+        Refinement(int[][] next, int[] classes, int[] refined, ConcurrentHashMap<Signature, Integer> signatures,
+                AtomicInteger ids, int from, int to) {
+            this.next = next;
+            this.classes = classes;
+            this.refined = refined;
+            this.signatures = signatures;
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Refinement(next, classes, refined, signatures, ids, from, middle),
+                        new Refinement(next, classes, refined, signatures, ids, middle, to));
+                return;
+            }
+            for (int state = from; state < to; state++) {
+                Signature signature = signatureOf(state);
+                Integer id = signatures.get(signature);
+                if (id == null) {
+                    Integer created = ids.getAndIncrement();
+                    id = signatures.putIfAbsent(signature, created);
+                    if (id == null) {
+                        id = created;
+                    }
+                }
+                refined[state] = id;
+            }
+        }
+
+        private Signature signatureOf(int state) {
+            int[] values = new int[next[state].length + 1];
+            values[0] = classes[state];
+            for (int symbol = 0; symbol < next[state].length; symbol++) {
+                int target = next[state][symbol];
+                if (target == -1) {
+                    // Negative, so that it cannot be the class of any state
+                    return new Signature(new int[] { -1 - state });
+                }
+                values[symbol + 1] = classes[target];
+            }
+            return new Signature(values);
+        }
+    }
+}
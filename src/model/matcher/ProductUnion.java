@@ -0,0 +1,148 @@
+package model.matcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+import model.exception.AutomatonTooLargeException;
+import model.regex.CharacterClass;
+
+/**
+ * Builds the union of any number of automata directly as a DFA. The states of the operands are
+ * numbered one after the other, and a state of the union is the set of states the operands may be
+ * in after the same word; it accepts if any of them does. For deterministic operands each set
+ * holds at most one state of each, so the union is their product automaton.
+ * <p>
+ * Unlike the union of two automata through epsilon moves, no state of the operands is renamed and
+ * the result needs no further determinisation.
+ */
+public class ProductUnion {
+
+    private final int stateLimit;
+
+    public ProductUnion() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param stateLimit
+     *            - the maximum number of states of the union.
+     */
+    public ProductUnion(int stateLimit) {
+        this.stateLimit = stateLimit;
+    }
+
+    /**
+     * Builds the union of the operands. Its states are labelled in breadth first order.
+     *
+     * @param operands
+     *            - the automata, deterministic or not.
+     * @param name
+     *            - the name of the union.
+     * @return the DFA of the union, without unreachable states.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would have more states than the state limit.
+     */
+    public Automaton union(List<IndexedNFA> operands, String name) throws AutomatonTooLargeException {
+        // Vocabulary, split into blocks all operands agree on
+        Set<String> symbols = new LinkedHashSet<>();
+        int stateCount = 0;
+        for (IndexedNFA operand : operands) {
+            for (int symbol = 0; symbol < operand.symbolCount(); symbol++) {
+                symbols.add(operand.symbol(symbol));
+            }
+            stateCount += operand.stateCount();
+        }
+        List<String> blocks = CharacterClass.partition(symbols);
+
+        // States of the operands, numbered one after the other
+        int words = BitSets.words(stateCount);
+        int[] owners = new int[stateCount];
+        int[] offsets = new int[operands.size()];
+        long[][] closures = new long[stateCount][];
+        long[] accepting = new long[words];
+        long[] initial = new long[words];
+        int[][] symbolsOf = new int[operands.size()][blocks.size()];
+        int offset = 0;
+        for (int i = 0; i < operands.size(); i++) {
+            IndexedNFA operand = operands.get(i);
+            offsets[i] = offset;
+            for (int state = 0; state < operand.stateCount(); state++) {
+                owners[offset + state] = i;
+                closures[offset + state] = shifted(operand.closure(state), offset, words);
+                if (operand.isAccepting(state)) {
+                    BitSets.set(accepting, offset + state);
+                }
+            }
+            if (operand.initial() != -1) {
+                BitSets.or(initial, closures[offset + operand.initial()]);
+            }
+            for (int block = 0; block < blocks.size(); block++) {
+                symbolsOf[i][block] = operand.symbolCovering(blocks.get(block));
+            }
+            offset += operand.stateCount();
+        }
+
+        Automaton union = new Automaton(name, blocks);
+        Map<StateSet, State> states = new HashMap<>();
+        Queue<long[]> pending = new LinkedList<>();
+        State initialState = new State(union.nextLabel());
+        states.put(new StateSet(initial), initialState);
+        pending.add(initial);
+        union.setInitialState(initialState);
+
+        while (!pending.isEmpty()) {
+            long[] current = pending.poll();
+            State currentState = states.get(new StateSet(current));
+            int[] members = BitSets.members(current);
+            List<State> toStates = new ArrayList<>(blocks.size());
+            for (int block = 0; block < blocks.size(); block++) {
+                long[] next = new long[words];
+                for (int member : members) {
+                    int owner = owners[member];
+                    int symbol = symbolsOf[owner][block];
+                    if (symbol != -1) {
+                        for (int target : operands.get(owner).targets(member - offsets[owner], symbol)) {
+                            BitSets.or(next, closures[offsets[owner] + target]);
+                        }
+                    }
+                }
+                if (BitSets.isEmpty(next)) {
+                    toStates.add(State.ERROR_STATE);
+                    continue;
+                }
+                StateSet key = new StateSet(next);
+                State nextState = states.get(key);
+                if (nextState == null) {
+                    if (states.size() == stateLimit) {
+                        throw new AutomatonTooLargeException(stateLimit);
+                    }
+                    nextState = new State(union.nextLabel());
+                    states.put(key, nextState);
+                    pending.add(next);
+                }
+                toStates.add(nextState);
+            }
+            union.addTransitions(currentState, toStates);
+            if (BitSets.intersects(current, accepting)) {
+                union.addAcceptingState(currentState);
+            }
+        }
+        return union;
+    }
+
+    private static long[] shifted(long[] bits, int offset, int words) {
+        long[] result = new long[words];
+        for (int member : BitSets.members(bits)) {
+            BitSets.set(result, offset + member);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,121 @@
+package model.matcher;
+
+import java.util.BitSet;
+import java.util.List;
+
+import model.regex.CharacterClass;
+import model.regex.Positions;
+
+/**
+ * Bit-parallel matcher for regular expressions with at most {@value #MAX_POSITIONS} positions. The
+ * whole state of the position automaton is a single {@code long}, bit i being set when position i
+ * is active.
+ * <p>
+ * Positions are numbered from left to right, so most follow relations are from position i to
+ * position i + 1 and are taken care of by a single shift. The remaining follow relations are
+ * looked up one byte of the state at a time in precomputed tables. The result is then masked with
+ * the positions holding the input symbol.
+ */
+public class ShiftAndMatcher implements Matcher {
+
+    public static final int MAX_POSITIONS = 64;
+
+    private final Alphabet alphabet;
+    private final long[] symbolMasks;
+    private final long first;
+    private final long last;
+    private final long shiftable;
+    private final long irregular;
+    private final long[][] irregularFollow;
+    private final boolean nullable;
+
+    public ShiftAndMatcher(Positions positions) {
+        if (!supports(positions)) {
+            throw new IllegalArgumentException("Too many positions for a single word: " + positions.size());
+        }
+        List<String> symbols = CharacterClass.partition(positions.symbols());
+        alphabet = new Alphabet(symbols);
+        symbolMasks = new long[symbols.size()];
+        for (int symbol = 0; symbol < symbols.size(); symbol++) {
+            for (int position = 0; position < positions.size(); position++) {
+                if (CharacterClass.covers(positions.symbol(position), symbols.get(symbol))) {
+                    symbolMasks[symbol] |= 1L << position;
+                }
+            }
+        }
+
+        first = toLong(positions.first());
+        last = toLong(positions.last());
+        nullable = positions.isNullable();
+
+        long[] rest = new long[positions.size()];
+        long shiftSources = 0;
+        long irregularSources = 0;
+        for (int position = 0; position < positions.size(); position++) {
+            long follow = toLong(positions.follow(position));
+            long next = position + 1 < MAX_POSITIONS ? 1L << (position + 1) : 0;
+            if ((follow & next) != 0) {
+                shiftSources |= 1L << position;
+                follow &= ~next;
+            }
+            if (follow != 0) {
+                irregularSources |= 1L << position;
+                rest[position] = follow;
+            }
+        }
+        shiftable = shiftSources;
+        irregular = irregularSources;
+
+        irregularFollow = new long[MAX_POSITIONS / 8][256];
+        for (int chunk = 0; chunk < MAX_POSITIONS / 8; chunk++) {
+            for (int value = 1; value < 256; value++) {
+                long follow = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    int position = chunk * 8 + bit;
+                    if ((value & (1 << bit)) != 0 && position < rest.length) {
+                        follow |= rest[position];
+                    }
+                }
+                irregularFollow[chunk][value] = follow;
+            }
+        }
+    }
+
+    /**
+     * @return true if the positions fit in the state word of this matcher.
+     */
+    public static boolean supports(Positions positions) {
+        return positions.size() <= MAX_POSITIONS;
+    }
+
+    private static long toLong(BitSet bits) {
+        long[] words = bits.toLongArray();
+        return words.length == 0 ? 0 : words[0];
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        if (input.length() == 0) {
+            return nullable;
+        }
+        int symbol = alphabet.indexOf(input.charAt(0));
+        if (symbol == -1) {
+            return false;
+        }
+        long state = first & symbolMasks[symbol];
+
+        for (int i = 1; i < input.length() && state != 0; i++) {
+            symbol = alphabet.indexOf(input.charAt(i));
+            if (symbol == -1) {
+                return false;
+            }
+            long next = (state & shiftable) << 1;
+            long sources = state & irregular;
+            for (int chunk = 0; sources != 0; chunk++, sources >>>= 8) {
+                next |= irregularFollow[chunk][(int) (sources & 0xFF)];
+            }
+            state = next & symbolMasks[symbol];
+        }
+        return (state & last) != 0;
+    }
+}
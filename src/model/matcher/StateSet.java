@@ -0,0 +1,32 @@
+package model.matcher;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of NFA state ids, usable as a hash key.
+ */
+final class StateSet {
+
+    final long[] bits;
+    private final int hash;
+
+    StateSet(long[] bits) {
+        this.bits = bits;
+        this.hash = Arrays.hashCode(bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof StateSet))
+            return false;
+        StateSet other = (StateSet) obj;
+        return hash == other.hash && Arrays.equals(bits, other.bits);
+    }
+}
@@ -0,0 +1,102 @@
+package model.matcher;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+import model.regex.CharacterClass;
+
+/**
+ * Checks whether an automaton, possibly non-deterministic, accepts every word over its
+ * vocabulary. The sets of states the automaton may be in are explored breadth first, as the
+ * subset construction would build them, and the search stops at the first set holding no
+ * accepting state.
+ * <p>
+ * A set is not explored if a subset of it has been: every word the larger set rejects, the
+ * smaller one rejects too. The sets kept form an antichain of minimal sets, which is usually much
+ * smaller than the determinised automaton.
+ */
+public class UniversalityChecker {
+
+    private final IndexedNFA nfa;
+
+    public UniversalityChecker(IndexedNFA nfa) {
+        this.nfa = nfa;
+    }
+
+    public boolean isUniversal() {
+        return counterexample() == null;
+    }
+
+    /**
+     * Finds a shortest word over the vocabulary which the automaton does not accept.
+     *
+     * @return the word, or null if the automaton accepts every word.
+     */
+    public String counterexample() {
+        long[] initial = new long[BitSets.words(nfa.stateCount())];
+        if (nfa.initial() != -1) {
+            BitSets.or(initial, nfa.closure(nfa.initial()));
+        }
+
+        Antichain antichain = new Antichain();
+        Queue<Subset> pending = new LinkedList<>();
+        Subset first = new Subset(initial, null, -1);
+        antichain.add(first.states);
+        if (rejects(first)) {
+            return wordOf(first);
+        }
+        pending.add(first);
+
+        while (!pending.isEmpty()) {
+            Subset subset = pending.poll();
+            for (int symbol = 0; symbol < nfa.symbolCount(); symbol++) {
+                long[] next = new long[subset.states.length];
+                for (int state : BitSets.members(subset.states)) {
+                    for (int target : nfa.targets(state, symbol)) {
+                        BitSets.or(next, nfa.closure(target));
+                    }
+                }
+                Subset successor = new Subset(next, subset, symbol);
+                if (antichain.add(successor.states)) {
+                    if (rejects(successor)) {
+                        return wordOf(successor);
+                    }
+                    pending.add(successor);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean rejects(Subset subset) {
+        return !BitSets.intersects(subset.states, nfa.accepting());
+    }
+
+    /**
+     * @return the word leading to the set, a character per symbol.
+     */
+    private String wordOf(Subset subset) {
+        StringBuilder word = new StringBuilder();
+        for (Subset current = subset; current.parent != null; current = current.parent) {
+            String symbol = nfa.symbol(current.symbol);
+            char[] ranges = CharacterClass.ranges(symbol);
+            word.insert(0, ranges.length > 0 ? String.valueOf(ranges[0]) : symbol);
+        }
+        return word.toString();
+    }
+
+    /**
+     * A set of states of the automaton, and the set and symbol it was reached from.
+     */
+    private static final class Subset {
+        final long[] states;
+        final Subset parent;
+        final int symbol;
+
+        Subset(long[] states, Subset parent, int symbol) {
+            this.states = states;
+            this.parent = parent;
+            this.symbol = symbol;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package model.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events, such as matches or cache flushes.
+ */
+public class Counter implements CounterMXBean {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long events) {
+        count.add(events);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount();
+    }
+}
@@ -0,0 +1,9 @@
+package model.metrics;
+
+/**
+ * The management interface of a {@link Counter}.
+ */
+public interface CounterMXBean {
+
+    long getCount();
+}
@@ -0,0 +1,97 @@
+package model.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Records the distribution of non-negative values, such as state counts, in buckets of powers of
+ * two. Recording takes no lock, so it may be done on every operation.
+ */
+public class Histogram implements HistogramMXBean {
+
+    private static final LongBinaryOperator MIN = new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.min(left, right);
+        }
+    };
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    // Bucket i holds the values of i significant bits, i.e. from 2^(i-1) to 2^i - 1
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(MIN, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(MAX, 0);
+
+    public void record(long value) {
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        min.accumulate(value);
+        max.accumulate(value);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    @Override
+    public long getMedian() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long get95thPercentile() {
+        return percentile(0.95);
+    }
+
+    @Override
+    public long get99thPercentile() {
+        return percentile(0.99);
+    }
+
+    private long percentile(double share) {
+        long count = getCount();
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length(); bucket++) {
+            seen += buckets.get(bucket);
+            if (seen > 0 && seen >= share * count) {
+                long upperBound = bucket == Long.SIZE ? Long.MAX_VALUE : (1L << bucket) - 1;
+                return Math.min(upperBound, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d min=%d mean=%.1f p50=%d p95=%d p99=%d max=%d", getCount(), getMin(),
+                getMean(), getMedian(), get95thPercentile(), get99thPercentile(), getMax());
+    }
+}
@@ -0,0 +1,22 @@
+package model.metrics;
+
+/**
+ * The management interface of a {@link Histogram}. Percentiles are approximate: they are the
+ * upper bound of the power of two bucket holding them.
+ */
+public interface HistogramMXBean {
+
+    long getCount();
+
+    long getMin();
+
+    long getMax();
+
+    double getMean();
+
+    long getMedian();
+
+    long get95thPercentile();
+
+    long get99thPercentile();
+}
@@ -0,0 +1,58 @@
+package model.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the hits and misses of a cache.
+ */
+public class HitRatio implements HitRatioMXBean {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    /**
+     * Records a lookup, a hit if the cached value was found.
+     */
+    public void lookup(boolean found) {
+        if (found) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    public void add(long hits, long misses) {
+        this.hits.add(hits);
+        this.misses.add(misses);
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getRatio() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d ratio=%.3f", getHits(), getMisses(), getRatio());
+    }
+}
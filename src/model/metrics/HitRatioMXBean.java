@@ -0,0 +1,16 @@
+package model.metrics;
+
+/**
+ * The management interface of a {@link HitRatio}.
+ */
+public interface HitRatioMXBean {
+
+    long getHits();
+
+    long getMisses();
+
+    /**
+     * @return the share of lookups which were hits, or 0 if there were none.
+     */
+    double getRatio();
+}
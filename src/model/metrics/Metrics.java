@@ -0,0 +1,87 @@
+package model.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The registry of the metrics recorded by the controller and the matching engines. Each metric
+ * is registered once under its name, and exposed as an MXBean named
+ * {@code RegExAnalyser:type=<kind>,name=<name>} on the platform MBean server. {@link #dump()}
+ * writes all of them as text.
+ * <p>
+ * Metrics are meant to be looked up once and kept in a static field, as in
+ * 
+ * <pre>
+ * private static final Timer MINIMISE = Metrics.timer("controller.minimise");
+ * </pre>
+ */
+public final class Metrics {
+
+    private static final String DOMAIN = "RegExAnalyser";
+    private static final ConcurrentSkipListMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return register(name, new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return register(name, new Histogram());
+    }
+
+    public static Timer timer(String name) {
+        return register(name, new Timer());
+    }
+
+    public static HitRatio hitRatio(String name) {
+        return register(name, new HitRatio());
+    }
+
+    /**
+     * Registers a metric unless one of the same name already is, and returns the registered one.
+     *
+     * @throws IllegalArgumentException
+     *             if a metric of another kind was registered under that name.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T register(String name, T metric) {
+        Object registered = metrics.putIfAbsent(name, metric);
+        if (registered != null) {
+            if (registered.getClass() != metric.getClass()) {
+                throw new IllegalArgumentException("Metric " + name + " is a " + registered.getClass().getSimpleName());
+            }
+            return (T) registered;
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + metric.getClass().getSimpleName() + ",name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metric, objectName);
+        } catch (JMException | SecurityException e) {
+            // The metric is still recorded and dumped
+            System.err.println("Metric " + name + " could not be registered: " + e);
+        }
+        return metric;
+    }
+
+    /**
+     * @return every metric, one per line, sorted by name; timers also list their slowest subjects.
+     */
+    public static String dump() {
+        StringBuilder dump = new StringBuilder();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            dump.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            if (entry.getValue() instanceof Timer) {
+                for (String slowest : ((Timer) entry.getValue()).getSlowest()) {
+                    dump.append("    ").append(slowest).append('\n');
+                }
+            }
+        }
+        return dump.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package model.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the durations of an operation, and which subjects (regular expressions or automata)
+ * took longest, so that the rules responsible for slow operations can be found.
+ */
+public class Timer extends Histogram implements TimerMXBean {
+
+    private static final int SLOWEST = 10;
+
+    private final long[] slowestNanos = new long[SLOWEST];
+    private final String[] slowestSubjects = new String[SLOWEST];
+    // The shortest duration kept, read without locking to skip most operations
+    private volatile long threshold;
+
+    /**
+     * Records the duration of an operation started at the given {@link System#nanoTime()}.
+     *
+     * @param subject
+     *            - what the operation worked on, or null.
+     * @return the duration, in nanoseconds.
+     */
+    public long record(long startNanos, String subject) {
+        long nanos = System.nanoTime() - startNanos;
+        record(nanos);
+        if (subject != null && nanos > threshold) {
+            keepSlowest(nanos, subject);
+        }
+        return nanos;
+    }
+
+    private synchronized void keepSlowest(long nanos, String subject) {
+        int position = SLOWEST - 1;
+        if (nanos <= slowestNanos[position]) {
+            return;
+        }
+        while (position > 0 && slowestNanos[position - 1] < nanos) {
+            slowestNanos[position] = slowestNanos[position - 1];
+            slowestSubjects[position] = slowestSubjects[position - 1];
+            position--;
+        }
+        slowestNanos[position] = nanos;
+        slowestSubjects[position] = subject;
+        threshold = slowestNanos[SLOWEST - 1];
+    }
+
+    @Override
+    public synchronized String[] getSlowest() {
+        List<String> slowest = new ArrayList<>();
+        for (int i = 0; i < SLOWEST && slowestSubjects[i] != null; i++) {
+            slowest.add(String.format("%.3f ms %s", slowestNanos[i] / 1e6, slowestSubjects[i]));
+        }
+        return slowest.toArray(new String[slowest.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms", getCount(),
+                getMean() / 1e6, getMedian() / 1e6, get95thPercentile() / 1e6, get99thPercentile() / 1e6,
+                getMax() / 1e6);
+    }
+}
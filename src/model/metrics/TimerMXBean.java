@@ -0,0 +1,13 @@
+package model.metrics;
+
+/**
+ * The management interface of a {@link Timer}. Durations are in nanoseconds.
+ */
+public interface TimerMXBean extends HistogramMXBean {
+
+    /**
+     * @return the slowest operations recorded, slowest first, each with its duration and the
+     *         regular expression or automaton it worked on.
+     */
+    String[] getSlowest();
+}
@@ -0,0 +1,295 @@
+package model.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A primitive matching any character of a set, written as {@code [a-z0-9]}. The set is kept as
+ * sorted, disjoint and non-adjacent character ranges, and its data is the canonical form of the
+ * ranges, so equal sets have equal data.
+ * <p>
+ * Symbols of a vocabulary are either a single character or a set of characters in the same
+ * canonical form. The static methods of this class read and partition such symbols.
+ */
+public class CharacterClass extends Primitive {
+
+    private static final char ESCAPE = '\\';
+
+    private final char[] ranges;
+
+    /**
+     * @param ranges
+     *            - pairs of first and last characters of each range, in any order.
+     * @param negated
+     *            - whether the class matches the characters outside the ranges.
+     */
+    public CharacterClass(char[] ranges, boolean negated) {
+        super(null);
+        char[] normalised = normalise(ranges);
+        this.ranges = negated ? complement(normalised) : normalised;
+        this.data = format(this.ranges);
+    }
+
+    @Override
+    protected boolean matches(String symbol) {
+        char[] symbolRanges = ranges(symbol);
+        return symbolRanges.length > 0 && contains(ranges, symbolRanges[0]);
+    }
+
+    @Override
+    protected Literals literals() {
+        return ranges.length == 2 && ranges[0] == ranges[1] ? Literals.exactly(data) : Literals.NONE;
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new CharacterClass(ranges.clone(), false);
+    }
+
+    /* ------ Symbol methods -------- */
+
+    /**
+     * Returns the characters denoted by a symbol as pairs of first and last characters of sorted
+     * ranges. Symbols which are neither a character nor a character set denote no character.
+     *
+     * @param symbol
+     *            - a vocabulary symbol.
+     * @return the ranges of the symbol.
+     */
+    public static char[] ranges(String symbol) {
+        if (symbol.length() == 1) {
+            return new char[] { symbol.charAt(0), symbol.charAt(0) };
+        }
+        if (!isSet(symbol)) {
+            return new char[0];
+        }
+        List<Character> bounds = new ArrayList<>();
+        int i = 1;
+        int end = symbol.length() - 1;
+        while (i < end) {
+            char first = symbol.charAt(i) == ESCAPE ? symbol.charAt(++i) : symbol.charAt(i);
+            char last = first;
+            i++;
+            if (i < end - 1 && symbol.charAt(i) == '-') {
+                i++;
+                last = symbol.charAt(i) == ESCAPE ? symbol.charAt(++i) : symbol.charAt(i);
+                i++;
+            }
+            bounds.add(first);
+            bounds.add(last);
+        }
+        char[] result = new char[bounds.size()];
+        for (int j = 0; j < result.length; j++) {
+            result[j] = bounds.get(j);
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether every character of the block is denoted by the symbol.
+     */
+    public static boolean covers(String symbol, String block) {
+        if (symbol.equals(block)) {
+            return true;
+        }
+        char[] symbolRanges = ranges(symbol);
+        char[] blockRanges = ranges(block);
+        if (blockRanges.length == 0) {
+            return false;
+        }
+        for (int i = 0; i < blockRanges.length; i += 2) {
+            if (!contains(symbolRanges, blockRanges[i]) || !contains(symbolRanges, blockRanges[i + 1])
+                    || rangeOf(symbolRanges, blockRanges[i]) != rangeOf(symbolRanges, blockRanges[i + 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits the characters denoted by the symbols into blocks of characters denoted by exactly
+     * the same symbols. Characters of a block are interchangeable in any automaton built over the
+     * symbols, so each block needs a single column in a transition table. Symbols denoting no
+     * character are kept as they are.
+     * <p>
+     * If all symbols are single characters they are their own blocks, and are returned in the
+     * order given.
+     *
+     * @param symbols
+     *            - the symbols to be partitioned.
+     * @return the blocks, each in the canonical form of a symbol.
+     */
+    public static List<String> partition(Collection<String> symbols) {
+        Set<String> distinct = new LinkedHashSet<>(symbols);
+        boolean hasSets = false;
+        for (String symbol : distinct) {
+            if (isSet(symbol)) {
+                hasSets = true;
+                break;
+            }
+        }
+        if (!hasSets) {
+            return new ArrayList<>(distinct);
+        }
+
+        List<String> atoms = new ArrayList<>();
+        List<char[]> sets = new ArrayList<>();
+        // Every range boundary splits the characters into elementary intervals
+        TreeSet<Integer> cuts = new TreeSet<>();
+        for (String symbol : distinct) {
+            char[] symbolRanges = ranges(symbol);
+            if (symbolRanges.length == 0) {
+                atoms.add(symbol);
+                continue;
+            }
+            sets.add(symbolRanges);
+            for (int i = 0; i < symbolRanges.length; i += 2) {
+                cuts.add((int) symbolRanges[i]);
+                cuts.add(symbolRanges[i + 1] + 1);
+            }
+        }
+
+        // Intervals covered by the same symbols belong to the same block
+        Map<List<Integer>, List<Character>> blocks = new HashMap<>();
+        List<List<Integer>> order = new ArrayList<>();
+        Integer start = cuts.first();
+        for (Integer next = cuts.higher(start); next != null; start = next, next = cuts.higher(next)) {
+            List<Integer> signature = new ArrayList<>();
+            for (int s = 0; s < sets.size(); s++) {
+                if (contains(sets.get(s), (char) start.intValue())) {
+                    signature.add(s);
+                }
+            }
+            if (signature.isEmpty()) {
+                continue;
+            }
+            List<Character> bounds = blocks.get(signature);
+            if (bounds == null) {
+                bounds = new ArrayList<>();
+                blocks.put(signature, bounds);
+                order.add(signature);
+            }
+            bounds.add((char) start.intValue());
+            bounds.add((char) (next - 1));
+        }
+
+        List<String> result = new ArrayList<>();
+        for (List<Integer> signature : order) {
+            List<Character> bounds = blocks.get(signature);
+            char[] blockRanges = new char[bounds.size()];
+            for (int i = 0; i < blockRanges.length; i++) {
+                blockRanges[i] = bounds.get(i);
+            }
+            result.add(format(normalise(blockRanges)));
+        }
+        result.addAll(atoms);
+        return result;
+    }
+
+    private static boolean isSet(String symbol) {
+        return symbol.length() > 2 && symbol.charAt(0) == '[' && symbol.charAt(symbol.length() - 1) == ']';
+    }
+
+    private static boolean contains(char[] ranges, char c) {
+        return rangeOf(ranges, c) != -1;
+    }
+
+    private static int rangeOf(char[] ranges, char c) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (c >= ranges[i] && c <= ranges[i + 1]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sorts the ranges and merges those which overlap or touch.
+     */
+    private static char[] normalise(char[] ranges) {
+        int count = ranges.length / 2;
+        int[][] pairs = new int[count][];
+        for (int i = 0; i < count; i++) {
+            char first = ranges[2 * i];
+            char last = ranges[2 * i + 1];
+            pairs[i] = first <= last ? new int[] { first, last } : new int[] { last, first };
+        }
+        Arrays.sort(pairs, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Integer.compare(a[0], b[0]);
+            }
+        });
+        List<int[]> merged = new ArrayList<>();
+        for (int[] pair : pairs) {
+            int[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && pair[0] <= previous[1] + 1) {
+                previous[1] = Math.max(previous[1], pair[1]);
+            } else {
+                merged.add(pair);
+            }
+        }
+        char[] result = new char[merged.size() * 2];
+        for (int i = 0; i < merged.size(); i++) {
+            result[2 * i] = (char) merged.get(i)[0];
+            result[2 * i + 1] = (char) merged.get(i)[1];
+        }
+        return result;
+    }
+
+    private static char[] complement(char[] ranges) {
+        List<Character> bounds = new ArrayList<>();
+        int next = Character.MIN_VALUE;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                bounds.add((char) next);
+                bounds.add((char) (ranges[i] - 1));
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            bounds.add((char) next);
+            bounds.add(Character.MAX_VALUE);
+        }
+        char[] result = new char[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Writes normalised ranges in canonical form. A single character is written as itself, any
+     * other set within brackets, escaping '\', '-' and ']'.
+     */
+    private static String format(char[] ranges) {
+        if (ranges.length == 2 && ranges[0] == ranges[1]) {
+            return String.valueOf(ranges[0]);
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < ranges.length; i += 2) {
+            append(sb, ranges[i]);
+            if (ranges[i + 1] != ranges[i]) {
+                sb.append('-');
+                append(sb, ranges[i + 1]);
+            }
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, char c) {
+        if (c == ESCAPE || c == '-' || c == ']') {
+            sb.append(ESCAPE);
+        }
+        sb.append(c);
+    }
+}
@@ -19,4 +19,19 @@ public class Concatenation extends RegEx {
     protected Set<RegEx> moveUp() {
         return right.moveDown();
     }
+
+    @Override
+    protected Literals literals() {
+        return Literals.concatenation(left.literals(), right.literals());
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new Concatenation(left.copy(), right.copy());
+    }
+
+    @Override
+    protected Term toTerm() {
+        return Term.concatenation(left.toTerm(), right.toTerm());
+    }
 }
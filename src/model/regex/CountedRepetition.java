@@ -0,0 +1,268 @@
+package model.regex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A counted repetition r{m}, r{m,} or r{m,n}. The repeated subtree is kept once, threaded on its
+ * own, rather than copied for every repetition. A position of the repetition is a pair of a
+ * position of the subtree and the number of the copy it belongs to, and it is only created when a
+ * follow set reaches it.
+ * <p>
+ * Within a copy, a position is followed by what follows it in the subtree. At the end of a copy
+ * comes the start of the next copy, if there may be one, and what follows the repetition, if
+ * enough copies were read. When the subtree accepts the empty word, a copy may be skipped; its
+ * positions are then only followed into the next copy, which can do all that any later copy can.
+ * <p>
+ * Without an upper bound, the copies after the m-th cannot be told apart, so they share the
+ * number m.
+ */
+public class CountedRepetition extends RegEx {
+
+    /**
+     * Copies of the subtree whose literals are concatenated, beyond which the literals of further
+     * copies are only known to repeat.
+     */
+    private static final int LITERAL_COPIES = 16;
+
+    private final RegEx base;
+    private final int min;
+    private final int max;
+    private final RegEx end;
+    private boolean locked;
+
+    private List<RegEx> basePositions;
+    private Map<RegEx, Integer> baseIndices;
+    private Set<RegEx> baseFirst;
+    private Map<RegEx, Set<RegEx>> baseFollow;
+    private Map<Long, Occurrence> occurrences;
+
+    /**
+     * @param base
+     *            - the repeated subtree.
+     * @param min
+     *            - the minimum number of repetitions.
+     * @param max
+     *            - the maximum number of repetitions, at least 1 and min, or -1 if there is none.
+     */
+    public CountedRepetition(RegEx base, int min, int max) {
+        this.left = null;
+        this.right = null;
+        this.base = base;
+        this.min = min;
+        this.max = max;
+        this.data = "{" + min + (min == max ? "" : "," + (max == -1 ? "" : max)) + "}";
+        this.locked = false;
+        this.end = new Lambda();
+        RegEx lastNode = base.knit();
+        lastNode.setThread(end);
+    }
+
+    /**
+     * @return the number of copies whose positions are told apart.
+     */
+    private int copies() {
+        return max == -1 ? min + 1 : max;
+    }
+
+    /**
+     * Computes the positions of the subtree and their follow sets within it, once.
+     */
+    private void index() {
+        if (basePositions != null) {
+            return;
+        }
+        basePositions = new ArrayList<>();
+        base.collectPositions(basePositions);
+        baseIndices = new HashMap<>();
+        for (RegEx position : basePositions) {
+            baseIndices.put(position, baseIndices.size());
+        }
+        baseFirst = base.moveDown();
+        baseFollow = new HashMap<>();
+        occurrences = new HashMap<>();
+    }
+
+    private Occurrence occurrence(RegEx position, int copy) {
+        long key = (long) copy * basePositions.size() + baseIndices.get(position);
+        Occurrence occurrence = occurrences.get(key);
+        if (occurrence == null) {
+            occurrence = new Occurrence(position, copy);
+            occurrences.put(key, occurrence);
+        }
+        return occurrence;
+    }
+
+    /**
+     * Adds the positions of a copy reached by the given positions of the subtree. The end of the
+     * subtree stands for the end of the copy.
+     */
+    private void addFollowing(Set<RegEx> nodes, int copy, Set<RegEx> follow) {
+        for (RegEx node : nodes) {
+            if (node != end) {
+                follow.add(occurrence(node, copy));
+            }
+        }
+        if (nodes.contains(end)) {
+            int next = max == -1 ? Math.min(copy + 1, min) : copy + 1;
+            if (next < copies()) {
+                for (RegEx node : baseFirst) {
+                    if (node != end) {
+                        follow.add(occurrence(node, next));
+                    }
+                }
+            }
+            if (copy + 1 >= min || baseFirst.contains(end)) {
+                follow.addAll(leave());
+            }
+        }
+    }
+
+    /**
+     * @return what follows the repetition, or nothing while it is already being left.
+     */
+    private Set<RegEx> leave() {
+        Set<RegEx> nodes = new HashSet<>();
+        if (!locked) {
+            locked = true;
+            nodes = thread.moveUp();
+            locked = false;
+        }
+        return nodes;
+    }
+
+    @Override
+    protected Set<RegEx> moveDown() {
+        index();
+        Set<RegEx> nodes = new HashSet<>();
+        for (RegEx node : baseFirst) {
+            if (node != end) {
+                nodes.add(occurrence(node, 0));
+            }
+        }
+        if (min == 0 || baseFirst.contains(end)) {
+            nodes.addAll(leave());
+        }
+        return nodes;
+    }
+
+    @Override
+    protected Set<RegEx> moveUp() {
+        return leave();
+    }
+
+    @Override
+    protected void collectPositions(List<RegEx> positions) {
+        index();
+        for (int copy = 0; copy < copies(); copy++) {
+            for (RegEx position : basePositions) {
+                positions.add(occurrence(position, copy));
+            }
+        }
+    }
+
+    @Override
+    protected long positionCount() {
+        return base.positionCount() * copies();
+    }
+
+    @Override
+    public void fillVocabulary(Set<String> vocabulary) {
+        base.fillVocabulary(vocabulary);
+    }
+
+    @Override
+    protected Literals literals() {
+        if (min == 0) {
+            return Literals.NONE;
+        }
+        // Without an upper bound, or with too many copies, the last copy stands for one or more
+        boolean open = max == -1 || min > LITERAL_COPIES;
+        int copies = Math.min(min, LITERAL_COPIES) - (open ? 1 : 0);
+        Literals copy = base.literals();
+        Literals literals = null;
+        for (int i = 0; i < copies; i++) {
+            literals = literals == null ? copy : Literals.concatenation(literals, copy);
+        }
+        if (open) {
+            Literals repeated = Literals.repeated(copy);
+            literals = literals == null ? repeated : Literals.concatenation(literals, repeated);
+        } else if (max > min) {
+            literals = Literals.concatenation(literals, Literals.NONE);
+        }
+        return literals;
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new CountedRepetition(base.copy(), min, max);
+    }
+
+    @Override
+    protected Term toTerm() {
+        return Term.repetition(base.toTerm(), min, max);
+    }
+
+    @Override
+    public String toString() {
+        return base.toString() + "(" + data + ") ";
+    }
+
+    /**
+     * A position of the subtree in one of the copies.
+     */
+    private final class Occurrence extends RegEx {
+
+        private final RegEx position;
+        private final int copy;
+
+        Occurrence(RegEx position, int copy) {
+            this.position = position;
+            this.copy = copy;
+            this.data = position.getData();
+        }
+
+        @Override
+        protected boolean matches(String symbol) {
+            return position.matches(symbol);
+        }
+
+        @Override
+        protected Set<RegEx> moveDown() {
+            Set<RegEx> nodes = new HashSet<>();
+            nodes.add(this);
+            return nodes;
+        }
+
+        @Override
+        protected Set<RegEx> moveUp() {
+            Set<RegEx> follow = baseFollow.get(position);
+            if (follow == null) {
+                follow = position.moveUp();
+                baseFollow.put(position, follow);
+            }
+            Set<RegEx> nodes = new HashSet<>();
+            addFollowing(follow, copy, nodes);
+            return nodes;
+        }
+
+        @Override
+        protected Literals literals() {
+            return position.literals();
+        }
+
+        @Override
+        protected RegEx copy() {
+            return position.copy();
+        }
+
+        @Override
+        protected Term toTerm() {
+            return position.toTerm();
+        }
+    }
+}
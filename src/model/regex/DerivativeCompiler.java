@@ -0,0 +1,103 @@
+package model.regex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import model.automaton.Automaton;
+import model.automaton.State;
+import model.exception.AutomatonTooLargeException;
+
+/**
+ * Compiles a term into a DFA with Brzozowski derivatives: each state is a term, and the
+ * transition of a state through a symbol leads to the derivative of its term with respect to
+ * that symbol. A state accepts if its term is nullable.
+ * <p>
+ * Terms are normalised by their smart constructors and hash-consed, so derivatives denoting the
+ * same language usually end up as the same term. The resulting DFA is then close to minimal,
+ * though it is not guaranteed to be. Derivatives of the empty term are left out, the transitions
+ * to them going to the error state instead.
+ */
+public class DerivativeCompiler {
+
+    private final int stateLimit;
+
+    public DerivativeCompiler() {
+        this(RegExTree.DEFAULT_STATE_LIMIT);
+    }
+
+    /**
+     * @param stateLimit
+     *            - the maximum number of states the DFA may have.
+     */
+    public DerivativeCompiler(int stateLimit) {
+        this.stateLimit = stateLimit;
+    }
+
+    /**
+     * Builds the DFA of a term. The vocabulary holds the blocks of characters that the symbols of
+     * the term cannot tell apart.
+     *
+     * @param term
+     *            - the term to be compiled.
+     * @param name
+     *            - the name of the automaton.
+     * @return the deterministic automaton.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would have more states than the state limit.
+     */
+    public Automaton compile(Term term, String name) throws AutomatonTooLargeException {
+        Set<String> symbols = new HashSet<>();
+        term.fillVocabulary(symbols);
+        List<String> vocabulary = new ArrayList<>(CharacterClass.partition(symbols));
+        Collections.sort(vocabulary);
+
+        Automaton dfa = new Automaton(name, vocabulary);
+        Map<Term, State> states = new HashMap<>();
+        Map<State, Term> terms = new HashMap<>();
+        Queue<State> pendingStates = new LinkedList<>();
+
+        State initialState = new State(dfa.nextLabel());
+        dfa.setInitialState(initialState);
+        states.put(term, initialState);
+        terms.put(initialState, term);
+        pendingStates.add(initialState);
+
+        while (!pendingStates.isEmpty()) {
+            State currentState = pendingStates.poll();
+            Term currentTerm = terms.get(currentState);
+            List<State> toStates = new ArrayList<>();
+
+            if (currentTerm.isNullable()) {
+                dfa.addAcceptingState(currentState);
+            }
+
+            for (String symbol : vocabulary) {
+                Term derivative = currentTerm.derivative(symbol);
+                if (derivative == Term.empty()) {
+                    toStates.add(State.ERROR_STATE);
+                    continue;
+                }
+                State state = states.get(derivative);
+                if (state == null) {
+                    if (states.size() == stateLimit) {
+                        throw new AutomatonTooLargeException(stateLimit);
+                    }
+                    state = new State(dfa.nextLabel());
+                    states.put(derivative, state);
+                    terms.put(state, derivative);
+                    pendingStates.add(state);
+                }
+                toStates.add(state);
+            }
+            dfa.addTransitions(currentState, toStates);
+        }
+        return dfa;
+    }
+}
@@ -0,0 +1,52 @@
+package model.regex;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The empty word, as in r{0}. It is not a position: going down or up through it goes straight
+ * on to whatever follows it. Under a repetition, what follows it is the repetition itself, so
+ * it is locked while going through it, as in {@link ZeroOrMoreRepetition}.
+ */
+public class Epsilon extends RegEx {
+
+    private boolean locked;
+
+    public Epsilon() {
+        left = null;
+        right = null;
+        this.data = "&";
+        this.locked = false;
+    }
+
+    @Override
+    protected Set<RegEx> moveDown() {
+        Set<RegEx> nodes = new HashSet<>();
+        if (!locked) {
+            locked = true;
+            nodes = thread.moveUp();
+            locked = false;
+        }
+        return nodes;
+    }
+
+    @Override
+    protected Set<RegEx> moveUp() {
+        return moveDown();
+    }
+
+    @Override
+    protected Literals literals() {
+        return Literals.exactly("");
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new Epsilon();
+    }
+
+    @Override
+    protected Term toTerm() {
+        return Term.epsilon();
+    }
+}
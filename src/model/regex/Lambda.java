@@ -24,4 +24,18 @@ public class Lambda extends RegEx {
         return set;
     }
 
+    @Override
+    protected Literals literals() {
+        return Literals.exactly("");
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new Lambda();
+    }
+
+    @Override
+    protected Term toTerm() {
+        return Term.epsilon();
+    }
 }
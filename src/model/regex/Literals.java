@@ -0,0 +1,114 @@
+package model.regex;
+
+/**
+ * Literal strings found in every word denoted by a regular expression: a prefix all words start
+ * with, a suffix all words end with, and a substring all words contain. When the regular
+ * expression denotes a single word, that word is kept as well.
+ */
+public class Literals {
+
+    static final Literals NONE = new Literals(null, "", "", "");
+
+    private final String exact;
+    private final String prefix;
+    private final String suffix;
+    private final String required;
+
+    Literals(String exact, String prefix, String suffix, String required) {
+        this.exact = exact;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.required = required;
+    }
+
+    static Literals exactly(String word) {
+        return new Literals(word, word, word, word);
+    }
+
+    static Literals concatenation(Literals left, Literals right) {
+        if (left.exact != null && right.exact != null) {
+            return exactly(left.exact + right.exact);
+        }
+        String prefix = left.exact != null ? left.exact + right.prefix : left.prefix;
+        String suffix = right.exact != null ? left.suffix + right.exact : right.suffix;
+        String required = longest(left.required, right.required, left.suffix + right.prefix);
+        required = longest(required, prefix, suffix);
+        return new Literals(null, prefix, suffix, required);
+    }
+
+    static Literals union(Literals left, Literals right) {
+        if (left.exact != null && left.exact.equals(right.exact)) {
+            return left;
+        }
+        String prefix = commonPrefix(left.prefix, right.prefix);
+        String suffix = commonSuffix(left.suffix, right.suffix);
+        String required = longest(prefix, suffix, "");
+        if (left.required.equals(right.required)) {
+            required = longest(required, left.required, "");
+        }
+        return new Literals(null, prefix, suffix, required);
+    }
+
+    /**
+     * Literals of one or more repetitions of a regular expression.
+     */
+    static Literals repeated(Literals literals) {
+        return new Literals(null, literals.prefix, literals.suffix, literals.required);
+    }
+
+    private static String longest(String a, String b, String c) {
+        String longest = a.length() >= b.length() ? a : b;
+        return longest.length() >= c.length() ? longest : c;
+    }
+
+    private static String commonPrefix(String a, String b) {
+        int length = 0;
+        while (length < a.length() && length < b.length() && a.charAt(length) == b.charAt(length)) {
+            length++;
+        }
+        return a.substring(0, length);
+    }
+
+    private static String commonSuffix(String a, String b) {
+        int length = 0;
+        while (length < a.length() && length < b.length()
+                && a.charAt(a.length() - 1 - length) == b.charAt(b.length() - 1 - length)) {
+            length++;
+        }
+        return a.substring(a.length() - length);
+    }
+
+    /**
+     * @return the only word denoted by the regular expression, or null if there is more than one.
+     */
+    public String exact() {
+        return exact;
+    }
+
+    public String prefix() {
+        return prefix;
+    }
+
+    public String suffix() {
+        return suffix;
+    }
+
+    /**
+     * @return the longest literal found that every word contains.
+     */
+    public String required() {
+        return required;
+    }
+
+    /**
+     * @return true if nothing is known about the words.
+     */
+    public boolean isEmpty() {
+        return required.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "prefix=\"" + prefix + "\" suffix=\"" + suffix + "\" required=\"" + required + "\"";
+    }
+}
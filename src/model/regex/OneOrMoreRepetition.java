@@ -23,4 +23,19 @@ public class OneOrMoreRepetition extends RegEx {
         return leftNodes;
     }
 
+    @Override
+    protected Literals literals() {
+        return Literals.repeated(left.literals());
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new OneOrMoreRepetition(left.copy());
+    }
+
+    @Override
+    protected Term toTerm() {
+        Term term = left.toTerm();
+        return Term.concatenation(term, Term.star(term));
+    }
 }
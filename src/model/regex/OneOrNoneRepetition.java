@@ -23,4 +23,18 @@ public class OneOrNoneRepetition extends RegEx {
         return thread.moveUp();
     }
 
+    @Override
+    protected Literals literals() {
+        return Literals.NONE;
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new OneOrNoneRepetition(left.copy());
+    }
+
+    @Override
+    protected Term toTerm() {
+        return Term.union(left.toTerm(), Term.epsilon());
+    }
 }
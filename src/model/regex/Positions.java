@@ -0,0 +1,110 @@
+package model.regex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The position sets of a regular expression tree. Each primitive node is a position, or one
+ * position for each copy under a counted repetition, numbered from left to right as it appears
+ * in the regular expression. For every position the set of
+ * positions that may follow it is given, along with the positions that may start and end a word.
+ */
+public class Positions {
+
+    private final List<String> symbols;
+    private final BitSet first;
+    private final BitSet last;
+    private final List<BitSet> follow;
+    private final boolean nullable;
+
+    Positions(RegEx root, RegEx lambda) {
+        List<RegEx> nodes = new ArrayList<>();
+        root.collectPositions(nodes);
+
+        Map<RegEx, Integer> indices = new HashMap<>();
+        symbols = new ArrayList<>(nodes.size());
+        for (RegEx node : nodes) {
+            indices.put(node, symbols.size());
+            symbols.add(node.getData());
+        }
+
+        Set<RegEx> firstNodes = root.moveDown();
+        first = toBitSet(firstNodes, indices);
+        nullable = firstNodes.contains(lambda);
+
+        last = new BitSet(nodes.size());
+        follow = new ArrayList<>(nodes.size());
+        for (int position = 0; position < nodes.size(); position++) {
+            Set<RegEx> followNodes = nodes.get(position).moveUp();
+            follow.add(toBitSet(followNodes, indices));
+            if (followNodes.contains(lambda)) {
+                last.set(position);
+            }
+        }
+    }
+
+    private static BitSet toBitSet(Set<RegEx> nodes, Map<RegEx, Integer> indices) {
+        BitSet bits = new BitSet(indices.size());
+        for (RegEx node : nodes) {
+            Integer index = indices.get(node);
+            if (index != null) {
+                bits.set(index);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * @return the number of positions.
+     */
+    public int size() {
+        return symbols.size();
+    }
+
+    /**
+     * @return the symbol at the given position.
+     */
+    public String symbol(int position) {
+        return symbols.get(position);
+    }
+
+    /**
+     * @return the symbol of each position, in position order.
+     */
+    public List<String> symbols() {
+        return Collections.unmodifiableList(symbols);
+    }
+
+    /**
+     * @return a copy of the positions that may start a word.
+     */
+    public BitSet first() {
+        return (BitSet) first.clone();
+    }
+
+    /**
+     * @return a copy of the positions that may end a word.
+     */
+    public BitSet last() {
+        return (BitSet) last.clone();
+    }
+
+    /**
+     * @return a copy of the positions that may come right after the given position.
+     */
+    public BitSet follow(int position) {
+        return (BitSet) follow.get(position).clone();
+    }
+
+    /**
+     * @return true if the empty word belongs to the language.
+     */
+    public boolean isNullable() {
+        return nullable;
+    }
+}
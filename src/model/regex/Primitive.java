@@ -1,6 +1,7 @@
 package model.regex;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class Primitive extends RegEx {
@@ -23,8 +24,33 @@ public class Primitive extends RegEx {
         return thread.moveUp();
     }
 
+    @Override
+    protected void collectPositions(List<RegEx> positions) {
+        positions.add(this);
+    }
+
+    @Override
+    protected long positionCount() {
+        return 1;
+    }
+
     @Override
     public void fillVocabulary(Set<String> vocabulary) {
         vocabulary.add(data);
     }
+
+    @Override
+    protected Literals literals() {
+        return Literals.exactly(data);
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new Primitive(data);
+    }
+
+    @Override
+    protected Term toTerm() {
+        return Term.symbol(data);
+    }
 }
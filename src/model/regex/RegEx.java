@@ -1,5 +1,6 @@
 package model.regex;
 
+import java.util.List;
 import java.util.Set;
 
 public abstract class RegEx {
@@ -29,7 +30,64 @@ public abstract class RegEx {
     protected abstract Set<RegEx> moveDown();
 
     protected abstract Set<RegEx> moveUp();
+
+    /**
+     * Finds the literals every word denoted by this subtree starts with, ends with and contains.
+     * 
+     * @return the literals of this subtree.
+     */
+    protected abstract Literals literals();
+
+    /**
+     * Creates a copy of this subtree. The copy has no threads, so it can be knitted in a tree of
+     * its own or in another part of the same tree.
+     * 
+     * @return the root of the copied subtree.
+     */
+    protected abstract RegEx copy();
+
+    /**
+     * Converts this subtree into a normalised, hash-consed term.
+     * 
+     * @return the term denoting the same language as this subtree.
+     */
+    protected abstract Term toTerm();
     
+    /**
+     * Checks whether this node stands for the given vocabulary symbol.
+     * 
+     * @param symbol
+     *            - a symbol of the vocabulary.
+     * @return true if the symbol is denoted by this node.
+     */
+    protected boolean matches(String symbol) {
+        return data.equals(symbol);
+    }
+
+    /**
+     * Adds the positions of this subtree to the list, from left to right.
+     * 
+     * @param positions
+     *            - the list of positions.
+     */
+    protected void collectPositions(List<RegEx> positions) {
+        if (left != null) {
+            left.collectPositions(positions);
+        }
+        if (right != null) {
+            right.collectPositions(positions);
+        }
+    }
+
+    /**
+     * Counts the positions of this subtree without creating them.
+     * 
+     * @return the number of positions.
+     */
+    protected long positionCount() {
+        return (left != null ? left.positionCount() : 0) + (right != null ? right.positionCount() : 0);
+    }
+
     public void fillVocabulary(Set<String> vocabulary) {
         if (left != null) {
             left.fillVocabulary(vocabulary);
@@ -1,5 +1,10 @@
 package model.regex;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import model.events.ParseEvent;
+
 public class RegExParser {
 
     private String input;
@@ -9,16 +14,32 @@ public class RegExParser {
     }
 
     public RegExTree parse() {
-        return new RegExTree(regex());
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        String regex = input;
+        RegExTree tree = new RegExTree(regex());
+        event.end();
+        if (event.shouldCommit()) {
+            event.regex = regex;
+            event.alphabetSize = tree.vocabularySize();
+            event.commit();
+        }
+        return tree;
     }
 
     /* ------ Utility methods -------- */
 
     private char peek() {
+        if (!more()) {
+            throw new RuntimeException("Unexpected end of regex");
+        }
         return input.charAt(0);
     }
 
     private void eat(char c) {
+        if (!more()) {
+            throw new RuntimeException("Unexpected end of regex, expected '" + c + "'");
+        }
         if (peek() == c) {
             this.input = this.input.substring(1);
         } else {
@@ -64,7 +85,7 @@ public class RegExParser {
     private RegEx factor() {
         RegEx base = base();
 
-        while (more() && (peek() == '*' || peek() == '+' || peek() == '?')) {
+        while (more() && (peek() == '*' || peek() == '+' || peek() == '?' || peek() == '{')) {
             switch (peek()) {
             case '*':
                 eat('*');
@@ -80,6 +101,10 @@ public class RegExParser {
                 eat('?');
                 base = new OneOrNoneRepetition(base);
                 break;
+
+            case '{':
+                base = countedRepetition(base);
+                break;
             }
         }
 
@@ -97,6 +122,10 @@ public class RegExParser {
             base = r;
             break;
 
+        case '[':
+            base = characterClass();
+            break;
+
         default:
             base = new Primitive(String.valueOf(next()));
             break;
@@ -104,4 +133,89 @@ public class RegExParser {
 
         return base;
     }
+
+    /**
+     * Parses {m}, {m,} or {m,n}. The base is kept once in a {@link CountedRepetition}, whose
+     * positions are told apart by copy number only when the follow sets reach them.
+     */
+    private RegEx countedRepetition(RegEx base) {
+        eat('{');
+        int min = number();
+        int max = min;
+        if (more() && peek() == ',') {
+            eat(',');
+            max = more() && peek() == '}' ? -1 : number();
+        }
+        eat('}');
+        if (max != -1 && max < min) {
+            throw new RuntimeException("Invalid repetition: {" + min + "," + max + "}");
+        }
+        if (max == 0) {
+            return new Epsilon();
+        }
+        if (min == 1 && max == 1) {
+            return base;
+        }
+        if (min == 0 && max == -1) {
+            return new ZeroOrMoreRepetition(base);
+        }
+        return new CountedRepetition(base, min, max);
+    }
+
+    private int number() {
+        int number = 0;
+        if (!more()) {
+            throw new RuntimeException("Unexpected end of regex, expected a number");
+        }
+        if (!Character.isDigit(peek())) {
+            throw new RuntimeException("Expected: a number; got: " + peek());
+        }
+        while (more() && Character.isDigit(peek())) {
+            int digit = next() - '0';
+            if (number > (Integer.MAX_VALUE - digit) / 10) {
+                throw new RuntimeException("Repetition too large: more than " + Integer.MAX_VALUE);
+            }
+            number = 10 * number + digit;
+        }
+        return number;
+    }
+
+    private RegEx characterClass() {
+        List<Character> bounds = new ArrayList<>();
+        boolean negated = false;
+
+        eat('[');
+        if (more() && peek() == '^') {
+            eat('^');
+            negated = true;
+        }
+        do {
+            char first = classCharacter();
+            char last = first;
+            if (input.length() > 1 && peek() == '-' && input.charAt(1) != ']') {
+                eat('-');
+                last = classCharacter();
+                if (last < first) {
+                    throw new RuntimeException("Invalid range: " + first + "-" + last);
+                }
+            }
+            bounds.add(first);
+            bounds.add(last);
+        } while (more() && peek() != ']');
+        eat(']');
+
+        char[] ranges = new char[bounds.size()];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = bounds.get(i);
+        }
+        return new CharacterClass(ranges, negated);
+    }
+
+    private char classCharacter() {
+        char c = next();
+        if (c == '\\') {
+            c = next();
+        }
+        return c;
+    }
 }
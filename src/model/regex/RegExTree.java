@@ -3,6 +3,7 @@ package model.regex;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -12,26 +13,43 @@ import java.util.TreeSet;
 
 import model.automaton.Automaton;
 import model.automaton.State;
+import model.events.DFAConstructionEvent;
+import model.events.LinkEvent;
+import model.exception.AutomatonTooLargeException;
+import model.metrics.Histogram;
+import model.metrics.Metrics;
 
 public class RegExTree {
 
+    public static final int DEFAULT_STATE_LIMIT = 100000;
+    private static final Histogram PEAK_COMPOSITION = Metrics.histogram("regex.convertToDFA.peakComposition");
+
     private String input;
     private RegEx root;
+    private final Term term;
     private Set<String> vocabulary;
     private RegEx lambda;
     private Automaton dfa;
     private String name;
+    private int stateLimit = DEFAULT_STATE_LIMIT;
 
     public RegExTree(RegEx root) {
         this.root = root;
+        term = root.toTerm();
         lambda = new Lambda();
         linkNodes();
         vocabulary = new TreeSet<>();
         fillVocabulary(vocabulary);
     }
 
+    /**
+     * Fills the vocabulary with the blocks of characters that the primitives cannot tell apart,
+     * so that a character class takes as few columns as possible in the transition table.
+     */
     private void fillVocabulary(Set<String> vocabulary) {
-        root.fillVocabulary(vocabulary);
+        Set<String> symbols = new HashSet<>();
+        root.fillVocabulary(symbols);
+        vocabulary.addAll(CharacterClass.partition(symbols));
     }
 
     @Override
@@ -40,20 +58,41 @@ public class RegExTree {
     }
 
     private void linkNodes() {
+        LinkEvent event = new LinkEvent();
+        event.begin();
         RegEx lastNode = root.knit();
         lastNode.setThread(lambda);
+        event.end();
+        if (event.shouldCommit()) {
+            event.nodes = (int) Math.min(positionCount() + 1, Integer.MAX_VALUE);
+            event.commit();
+        }
     }
 
-    public Automaton convertToDFA() {
+    /**
+     * Converts this tree into a DFA whose states are the sets of nodes that may come next.
+     *
+     * @return the deterministic automaton.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would have more states than the state limit, or if the tree has so
+     *             many positions that it likely would.
+     */
+    public Automaton convertToDFA() throws AutomatonTooLargeException {
+        checkPositionCount();
+        DFAConstructionEvent event = new DFAConstructionEvent();
+        event.begin();
         Map<State, Set<RegEx>> compositions = new HashMap<>();
+        Map<Set<RegEx>, State> statesByComposition = new HashMap<>();
         Queue<State> pendingStates = new LinkedList<>();
         Set<RegEx> currentComposition = root.moveDown();
+        int peakComposition = currentComposition.size();
         dfa = new Automaton(name, new ArrayList<>(vocabulary));
         State currentState = new State(dfa.nextLabel());
 
         dfa.setInitialState(currentState);
         pendingStates.add(currentState);
         compositions.put(currentState, currentComposition);
+        statesByComposition.put(currentComposition, currentState);
 
         while (!pendingStates.isEmpty()) {
 
@@ -68,7 +107,7 @@ public class RegExTree {
             for (String symbol : vocabulary) {
                 Set<RegEx> symbolNodes = new HashSet<>();
                 for (RegEx node : currentComposition) {
-                    if (node.data.equals(symbol)) {
+                    if (node.matches(symbol)) {
                         symbolNodes.add(node);
                     }
                 }
@@ -77,29 +116,170 @@ public class RegExTree {
                     for (RegEx node : symbolNodes) {
                         newComposition.addAll(node.moveUp());
                     }
-                    boolean shouldCreateNewState = true;
-                    for (Map.Entry<State, Set<RegEx>> composition : compositions.entrySet()) {
-                        if (newComposition.equals(composition.getValue())) {
-                            toStates.add(composition.getKey());
-                            shouldCreateNewState = false;
-                            break;
+                    State state = statesByComposition.get(newComposition);
+                    if (state == null) {
+                        peakComposition = Math.max(peakComposition, newComposition.size());
+                        if (compositions.size() == stateLimit) {
+                            dfa = null;
+                            throw new AutomatonTooLargeException(stateLimit);
                         }
-                    }
-                    if (shouldCreateNewState) {
-                        State state = new State(dfa.nextLabel());
-                        toStates.add(state);
+                        state = new State(dfa.nextLabel());
                         compositions.put(state, newComposition);
+                        statesByComposition.put(newComposition, state);
                         pendingStates.add(state);
                     }
+                    toStates.add(state);
                 } else {
                     toStates.add(State.ERROR_STATE);
                 }
             }
             dfa.addTransitions(currentState, toStates);
         }
+        PEAK_COMPOSITION.record(peakComposition);
+        event.end();
+        if (event.shouldCommit()) {
+            event.regex = input != null ? input : toString();
+            event.method = "threaded tree";
+            event.states = dfa.states().size();
+            event.alphabetSize = vocabulary.size();
+            event.peakSubset = peakComposition;
+            event.commit();
+        }
+        return dfa;
+    }
+
+    /**
+     * Converts this tree into a DFA whose states are the Brzozowski derivatives of its term. The
+     * DFA is usually close to minimal, so it often needs no minimisation at all.
+     *
+     * @return the deterministic automaton.
+     * @throws AutomatonTooLargeException
+     *             if the DFA would have more states than the state limit.
+     */
+    public Automaton convertToDFAByDerivatives() throws AutomatonTooLargeException {
+        DFAConstructionEvent event = new DFAConstructionEvent();
+        event.begin();
+        Automaton dfa = new DerivativeCompiler(stateLimit).compile(term(), name);
+        event.end();
+        if (event.shouldCommit()) {
+            event.regex = input != null ? input : toString();
+            event.method = "derivatives";
+            event.states = dfa.states().size();
+            event.alphabetSize = dfa.vocabulary().size();
+            event.commit();
+        }
         return dfa;
     }
 
+    int vocabularySize() {
+        return vocabulary.size();
+    }
+
+    /**
+     * Returns the term of this tree. Unlike the nodes of the tree, which are threaded for the
+     * conversions and belong to this tree only, the term is immutable and shared: trees denoting
+     * the same normalised expression have the very same term, so it can be compared by identity
+     * and used as a key for anything compiled from the tree.
+     *
+     * @return the normalised, hash-consed term of this tree.
+     */
+    public Term term() {
+        return term;
+    }
+
+    /**
+     * Builds the position (Glushkov) automaton of this tree: one state for each primitive node
+     * reachable from the root plus an initial state, with no epsilon moves. It has as many states
+     * as the regular expression has symbols, so it is cheap to build even when the equivalent DFA
+     * would be exponentially large.
+     *
+     * @return the non-deterministic automaton.
+     * @throws AutomatonTooLargeException
+     *             if the NFA would have more states than the state limit.
+     */
+    public Automaton convertToNFA() throws AutomatonTooLargeException {
+        checkPositionCount();
+        Map<RegEx, State> positions = new HashMap<>();
+        Map<State, Set<RegEx>> follows = new LinkedHashMap<>();
+        Queue<State> pendingStates = new LinkedList<>();
+        Automaton nfa = new Automaton(name, new ArrayList<>(vocabulary));
+        State initialState = new State(nfa.nextLabel());
+
+        nfa.setInitialState(initialState);
+        follows.put(initialState, root.moveDown());
+        pendingStates.add(initialState);
+
+        while (!pendingStates.isEmpty()) {
+            State currentState = pendingStates.poll();
+            Set<RegEx> follow = follows.get(currentState);
+            List<State> toStates = new ArrayList<>();
+
+            if (follow.contains(lambda)) {
+                nfa.addAcceptingState(currentState);
+            }
+
+            for (String symbol : vocabulary) {
+                Set<String> labels = new TreeSet<>();
+                for (RegEx node : follow) {
+                    if (node != lambda && node.matches(symbol)) {
+                        State position = positions.get(node);
+                        if (position == null) {
+                            position = new State(nfa.nextLabel());
+                            positions.put(node, position);
+                            follows.put(position, node.moveUp());
+                            pendingStates.add(position);
+                        }
+                        labels.addAll(position.labels());
+                    }
+                }
+                toStates.add(labels.isEmpty() ? State.ERROR_STATE : new State(labels));
+            }
+            nfa.addTransitions(currentState, toStates);
+        }
+        return nfa;
+    }
+
+    /**
+     * Computes the position sets of this tree.
+     *
+     * @return the first, follow and last sets of the primitive nodes.
+     * @throws AutomatonTooLargeException
+     *             if there are more positions than the state limit.
+     */
+    public Positions positions() throws AutomatonTooLargeException {
+        checkPositionCount();
+        return new Positions(root, lambda);
+    }
+
+    /**
+     * Counts the positions of this tree without creating them. A counted repetition has the
+     * positions of its subtree once for each copy, so this is where a large repetition shows.
+     *
+     * @return the number of positions.
+     */
+    public long positionCount() {
+        return root.positionCount();
+    }
+
+    /**
+     * Rejects a tree whose positions alone exceed the state limit, before any conversion starts:
+     * its NFA would be larger than the limit, and its DFA most likely too.
+     */
+    private void checkPositionCount() throws AutomatonTooLargeException {
+        if (positionCount() > stateLimit) {
+            throw new AutomatonTooLargeException(stateLimit);
+        }
+    }
+
+    /**
+     * Finds the literals every word of the language starts with, ends with and contains.
+     *
+     * @return the literals of this tree.
+     */
+    public Literals literals() {
+        return root.literals();
+    }
+
     public Automaton getDfa() {
         if (dfa == null) {
             dfa = convertToDFA();
@@ -107,6 +287,16 @@ public class RegExTree {
         return dfa;
     }
 
+    /**
+     * Sets the maximum number of states {@link #convertToDFA()} may create.
+     *
+     * @param stateLimit
+     *            - the state limit.
+     */
+    public void setStateLimit(int stateLimit) {
+        this.stateLimit = stateLimit;
+    }
+
     public void setInput(String input) {
         this.input = input;
     }
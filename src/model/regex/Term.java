@@ -0,0 +1,408 @@
+package model.regex;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable regular expression term. Terms are hash-consed: structurally equal terms are the
+ * same object, so they can be compared with {@code ==} and used as keys by identity. Terms are
+ * only created through smart constructors, which bring them into a normal form:
+ * <ul>
+ * <li>unions and intersections are flattened, sorted and free of duplicates;</li>
+ * <li>concatenations are right associative;</li>
+ * <li>the empty language and the empty word are simplified away wherever possible;</li>
+ * <li>nested and repeated stars are merged.</li>
+ * </ul>
+ * Counted repetitions are kept as such rather than expanded, so r{1000} is a single term.
+ * Besides the operators of the parser, terms support intersection and complement.
+ */
+public final class Term {
+
+    public enum Kind {
+        EMPTY, EPSILON, SYMBOL, CONCATENATION, UNION, STAR, INTERSECTION, COMPLEMENT, REPETITION
+    }
+
+    private static final Map<Term, WeakReference<Term>> interned = new WeakHashMap<>();
+    private static final AtomicInteger ids = new AtomicInteger();
+    private static final Term[] NO_TERMS = new Term[0];
+
+    private static final Term EMPTY = intern(new Term(Kind.EMPTY, null, NO_TERMS));
+    private static final Term EPSILON = intern(new Term(Kind.EPSILON, null, NO_TERMS));
+    private static final Term UNIVERSAL = intern(new Term(Kind.COMPLEMENT, null, new Term[] { EMPTY }));
+
+    private final Kind kind;
+    private final String symbol;
+    private final Term[] children;
+    private final int min;
+    private final int max;
+    private final int hash;
+    private final boolean nullable;
+    private int id;
+
+    private Term(Kind kind, String symbol, Term[] children) {
+        this(kind, symbol, children, 0, 0);
+    }
+
+    private Term(Kind kind, String symbol, Term[] children, int min, int max) {
+        this.kind = kind;
+        this.symbol = symbol;
+        this.children = children;
+        this.min = min;
+        this.max = max;
+        this.hash = 31 * (31 * (31 * (31 * kind.hashCode() + (symbol == null ? 0 : symbol.hashCode()))
+                + Arrays.hashCode(children)) + min) + max;
+        this.nullable = nullable(kind, children, min);
+    }
+
+    private static boolean nullable(Kind kind, Term[] children, int min) {
+        switch (kind) {
+        case REPETITION:
+            return min == 0 || children[0].nullable;
+        case EPSILON:
+        case STAR:
+            return true;
+        case CONCATENATION:
+        case INTERSECTION:
+            for (Term child : children) {
+                if (!child.nullable) {
+                    return false;
+                }
+            }
+            return true;
+        case UNION:
+            for (Term child : children) {
+                if (child.nullable) {
+                    return true;
+                }
+            }
+            return false;
+        case COMPLEMENT:
+            return !children[0].nullable;
+        default:
+            return false;
+        }
+    }
+
+    private static Term intern(Term term) {
+        synchronized (interned) {
+            WeakReference<Term> reference = interned.get(term);
+            Term existing = reference == null ? null : reference.get();
+            if (existing != null) {
+                return existing;
+            }
+            term.id = ids.getAndIncrement();
+            interned.put(term, new WeakReference<>(term));
+            return term;
+        }
+    }
+
+    /* ------ Smart constructors -------- */
+
+    /**
+     * @return the term denoting no word at all.
+     */
+    public static Term empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return the term denoting the empty word only.
+     */
+    public static Term epsilon() {
+        return EPSILON;
+    }
+
+    /**
+     * @return the term denoting every word.
+     */
+    public static Term universal() {
+        return UNIVERSAL;
+    }
+
+    /**
+     * @param symbol
+     *            - a character or a character set, as in the vocabulary of an automaton.
+     * @return the term denoting the one character words of the symbol.
+     */
+    public static Term symbol(String symbol) {
+        return intern(new Term(Kind.SYMBOL, symbol, NO_TERMS));
+    }
+
+    public static Term concatenation(Term left, Term right) {
+        if (left == EMPTY || right == EMPTY) {
+            return EMPTY;
+        }
+        if (left == EPSILON) {
+            return right;
+        }
+        if (right == EPSILON) {
+            return left;
+        }
+        if (left.kind == Kind.CONCATENATION) {
+            return concatenation(left.children[0], concatenation(left.children[1], right));
+        }
+        if (left.kind == Kind.STAR && (left == right
+                || right.kind == Kind.CONCATENATION && right.children[0] == left)) {
+            return right;
+        }
+        return intern(new Term(Kind.CONCATENATION, null, new Term[] { left, right }));
+    }
+
+    public static Term union(Term left, Term right) {
+        Set<Term> terms = flatten(Kind.UNION, left, right);
+        terms.remove(EMPTY);
+        if (terms.contains(UNIVERSAL)) {
+            return UNIVERSAL;
+        }
+        if (terms.contains(EPSILON)) {
+            for (Term term : terms) {
+                if (term != EPSILON && term.nullable) {
+                    terms.remove(EPSILON);
+                    break;
+                }
+            }
+        }
+        return nary(Kind.UNION, terms, EMPTY);
+    }
+
+    public static Term intersection(Term left, Term right) {
+        Set<Term> terms = flatten(Kind.INTERSECTION, left, right);
+        if (terms.contains(EMPTY)) {
+            return EMPTY;
+        }
+        terms.remove(UNIVERSAL);
+        return nary(Kind.INTERSECTION, terms, UNIVERSAL);
+    }
+
+    public static Term star(Term term) {
+        if (term == EMPTY || term == EPSILON) {
+            return EPSILON;
+        }
+        if (term.kind == Kind.STAR) {
+            return term;
+        }
+        return intern(new Term(Kind.STAR, null, new Term[] { term }));
+    }
+
+    /**
+     * @param term
+     *            - the repeated term.
+     * @param min
+     *            - the minimum number of repetitions.
+     * @param max
+     *            - the maximum number of repetitions, or -1 if there is none.
+     * @return the term denoting from min to max words of the term, one after the other.
+     */
+    public static Term repetition(Term term, int min, int max) {
+        if (max == -1 && min == 0) {
+            return star(term);
+        }
+        if (max == 0 || term == EPSILON) {
+            return EPSILON;
+        }
+        if (term == EMPTY) {
+            return min == 0 ? EPSILON : EMPTY;
+        }
+        if (min == 1 && max == 1) {
+            return term;
+        }
+        return intern(new Term(Kind.REPETITION, null, new Term[] { term }, min, max));
+    }
+
+    public static Term complement(Term term) {
+        if (term.kind == Kind.COMPLEMENT) {
+            return term.children[0];
+        }
+        return intern(new Term(Kind.COMPLEMENT, null, new Term[] { term }));
+    }
+
+    private static Set<Term> flatten(Kind kind, Term left, Term right) {
+        Set<Term> terms = new TreeSet<>(new Comparator<Term>() {
+            @Override
+            public int compare(Term a, Term b) {
+                return Integer.compare(a.id, b.id);
+            }
+        });
+        for (Term term : new Term[] { left, right }) {
+            if (term.kind == kind) {
+                Collections.addAll(terms, term.children);
+            } else {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static Term nary(Kind kind, Set<Term> terms, Term neutral) {
+        if (terms.isEmpty()) {
+            return neutral;
+        }
+        if (terms.size() == 1) {
+            return terms.iterator().next();
+        }
+        return intern(new Term(kind, null, terms.toArray(NO_TERMS)));
+    }
+
+    /* ------ Derivatives -------- */
+
+    /**
+     * Returns the Brzozowski derivative of this term with respect to a block of characters, that
+     * is, the term denoting the words w such that cw is denoted by this term, for any character c
+     * of the block. The block must be either fully inside or fully outside each symbol of the term.
+     *
+     * @param block
+     *            - a vocabulary symbol.
+     * @return the derivative.
+     */
+    public Term derivative(String block) {
+        switch (kind) {
+        case SYMBOL:
+            return CharacterClass.covers(symbol, block) ? EPSILON : EMPTY;
+        case CONCATENATION:
+            Term derivative = concatenation(children[0].derivative(block), children[1]);
+            return children[0].nullable ? union(derivative, children[1].derivative(block)) : derivative;
+        case UNION:
+            Term union = EMPTY;
+            for (Term child : children) {
+                union = union(union, child.derivative(block));
+            }
+            return union;
+        case INTERSECTION:
+            Term intersection = UNIVERSAL;
+            for (Term child : children) {
+                intersection = intersection(intersection, child.derivative(block));
+            }
+            return intersection;
+        case STAR:
+            return concatenation(children[0].derivative(block), this);
+        case REPETITION:
+            Term rest = repetition(children[0], Math.max(min - 1, 0), max == -1 ? -1 : max - 1);
+            return concatenation(children[0].derivative(block), rest);
+        case COMPLEMENT:
+            return complement(children[0].derivative(block));
+        default:
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Adds the symbols used in this term to the set.
+     */
+    public void fillVocabulary(Set<String> vocabulary) {
+        if (kind == Kind.SYMBOL) {
+            vocabulary.add(symbol);
+        }
+        for (Term child : children) {
+            child.fillVocabulary(vocabulary);
+        }
+    }
+
+    /* ------ Accessors -------- */
+
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return the symbol of a symbol term, null for any other term.
+     */
+    public String symbol() {
+        return symbol;
+    }
+
+    public List<Term> children() {
+        return Collections.unmodifiableList(Arrays.asList(children));
+    }
+
+    /**
+     * @return the minimum number of repetitions of a repetition term, 0 for any other term.
+     */
+    public int min() {
+        return min;
+    }
+
+    /**
+     * @return the maximum number of repetitions of a repetition term, -1 if there is none, 0 for
+     *         any other term.
+     */
+    public int max() {
+        return max;
+    }
+
+    /**
+     * @return true if the empty word is denoted by this term.
+     */
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Compares the structure of two terms. Children are compared by identity, which is enough as
+     * they are already interned.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Term))
+            return false;
+        Term other = (Term) obj;
+        if (hash != other.hash || kind != other.kind || children.length != other.children.length)
+            return false;
+        if (min != other.min || max != other.max)
+            return false;
+        if (symbol == null ? other.symbol != null : !symbol.equals(other.symbol))
+            return false;
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] != other.children[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+        case EMPTY:
+            return "\u2205";
+        case EPSILON:
+            return "&";
+        case SYMBOL:
+            return symbol;
+        case STAR:
+            return "(" + children[0] + ")*";
+        case REPETITION:
+            return "(" + children[0] + "){" + min + (min == max ? "" : "," + (max == -1 ? "" : max)) + "}";
+        case COMPLEMENT:
+            return "~(" + children[0] + ")";
+        default:
+            String operator = kind == Kind.UNION ? "|" : kind == Kind.INTERSECTION ? "&&" : "";
+            List<String> parts = new ArrayList<>();
+            for (Term child : children) {
+                parts.add(kind == Kind.CONCATENATION ? child.toString() : "(" + child + ")");
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < parts.size(); i++) {
+                if (i > 0) {
+                    sb.append(operator);
+                }
+                sb.append(parts.get(i));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -26,4 +26,19 @@ public class Union extends RegEx {
         }
         return tempRight.getThread().moveUp();
     }
+
+    @Override
+    protected Literals literals() {
+        return Literals.union(left.literals(), right.literals());
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new Union(left.copy(), right.copy());
+    }
+
+    @Override
+    protected Term toTerm() {
+        return Term.union(left.toTerm(), right.toTerm());
+    }
 }
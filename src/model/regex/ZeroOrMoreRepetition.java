@@ -32,4 +32,18 @@ public class ZeroOrMoreRepetition extends RegEx {
         return moveDown();
     }
 
+    @Override
+    protected Literals literals() {
+        return Literals.NONE;
+    }
+
+    @Override
+    protected RegEx copy() {
+        return new ZeroOrMoreRepetition(left.copy());
+    }
+
+    @Override
+    protected Term toTerm() {
+        return Term.star(left.toTerm());
+    }
 }
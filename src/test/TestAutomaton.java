@@ -1,14 +1,41 @@
 package test;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import controller.Controller;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import model.automaton.Automaton;
 import model.exception.AutomatonAlreadyMinimumException;
+import model.exception.AutomatonTooLargeException;
+import model.io.MappedAutomaton;
+import model.matcher.ByteDFA;
+import model.matcher.InclusionChecker;
+import model.matcher.IndexedNFA;
+import model.matcher.Matcher;
+import model.matcher.MultiPatternMatcher;
+import model.matcher.NFASimulationMatcher;
+import model.matcher.ParallelDeterminiser;
+import model.matcher.ParallelMinimiser;
+import model.metrics.Metrics;
 import model.regex.RegExParser;
 import model.regex.RegExTree;
+import view.AnalysisServer;
+import view.BatchAnalyser;
 
 public class TestAutomaton {
 
@@ -22,6 +49,316 @@ public class TestAutomaton {
         // testIntersection();
         // testDifference();
         testEquivalence();
+        // testLazyMatching();
+        // testNFASimulation();
+        // testShiftAnd();
+        // testMultiPattern();
+        // testLiteralPrefilter();
+        // testCharacterClasses();
+        // testByteDFA();
+        // testCountedRepetition();
+        // testDerivatives();
+        // testSharedTerms();
+        // testSerialization();
+        // testWorkspace();
+        // testBytecode();
+        // testBatch();
+        // testServer();
+        // testMetrics();
+        // testFlightRecorder();
+        // testParallelDeterminisation();
+        // testParallelMinimisation();
+        // testInclusion();
+        // testUniversality();
+        // testNFAReduction();
+        // testNaryUnion();
+        // testRuleSet();
+        // testCounting();
+    }
+
+    private static void testCounting() {
+        int idIndex = Controller.instance().convertRegExToAutomaton(
+                Controller.instance().createRegularExpression("[A-Z][a-z]?[0-9]"));
+        System.out.println(Controller.instance().isFinite(idIndex)); // true
+        Controller.instance().languageSize(idIndex); // 7020 words
+        int index = Controller.instance().convertRegExToAutomaton(
+                Controller.instance().createRegularExpression("(a|b)*abb"));
+        System.out.println(Arrays.toString(Controller.instance().wordCounts(index, 6))); // [0, 0, 0, 1, 2, 4, 8]
+        Controller.instance().languageSize(index); // infinitely many words
+    }
+
+    private static void testRuleSet() {
+        int[] indices = new int[3];
+        String[] regexes = { "(a|b)*abb", "ab*", "a(a|b)*" };
+        for (int i = 0; i < regexes.length; i++) {
+            indices[i] = Controller.instance().createRegularExpression(regexes[i]);
+            Controller.instance().addRule(indices[i]);
+        }
+        System.out.println(Controller.instance().rules().matchAll("abb")); // [(a|b)*abb, a(a|b)*, ab*]
+        Controller.instance().removeRule(indices[2]);
+        System.out.println(Controller.instance().rules().matchAll("abb")); // [(a|b)*abb, ab*]
+        Controller.instance().rulesToAutomaton();
+    }
+
+    private static void testNaryUnion() {
+        List<Integer> indices = new ArrayList<>();
+        for (String regex : new String[] { "(a|b)*abb", "ab*", "[a-c]c", "b+" }) {
+            int regexIndex = Controller.instance().createRegularExpression(regex);
+            indices.add(Controller.instance().convertRegExToAutomaton(regexIndex));
+        }
+        Controller.instance().printAutomaton(Controller.instance().union(indices));
+    }
+
+    private static void testNFAReduction() {
+        int indexA = Controller.instance().convertRegExToNFA(Controller.instance().createRegularExpression("(a|b)*abb"));
+        int indexB = Controller.instance().convertRegExToNFA(Controller.instance().createRegularExpression("(a|b)*bbb"));
+        // The chains reading the last two symbols of both are bisimilar, so they are merged
+        int index = Controller.instance().determinise(Controller.instance().union(indexA, indexB));
+        Controller.instance().printAutomaton(index);
+    }
+
+    private static void testUniversality() {
+        int indexA = Controller.instance().convertRegExToNFA(Controller.instance().createRegularExpression("(a|b)*a"));
+        int indexB = Controller.instance().convertRegExToNFA(Controller.instance().createRegularExpression("(a|b)*b"));
+        int union = Controller.instance().union(indexA, indexB);
+        System.out.println(Controller.instance().universalityCounterexample(union)); // empty word
+        System.out.println(Controller.instance().isIncluded(indexA, union)); // true
+    }
+
+    private static void testInclusion() {
+        int regexA = Controller.instance().createRegularExpression("[0-9]+");
+        int regexB = Controller.instance().createRegularExpression("[0-5]*");
+        System.out.println(Controller.instance().inclusionCounterexample(regexA, regexB)); // 6
+        System.out.println(Controller.instance().inclusionCounterexample(regexB, regexA)); // empty word
+    }
+
+    private static void testParallelMinimisation() {
+        // Every word of at least eight symbols. The DFA built from the positions is large enough
+        // for the parallel refinement, where the NFA would be reduced before determinising
+        int regexIndex = Controller.instance().createRegularExpression("(a|b)*a(a|b){7}|(a|b)*b(a|b){7}");
+        int dfaIndex = Controller.instance().convertRegExToAutomaton(regexIndex);
+        Automaton dfa = Controller.instance().automaton(dfaIndex);
+        System.out.println("states: " + dfa.states().size()); // 383
+        System.out.println("classes: " + new ParallelMinimiser().partition(dfa).size()); // 9
+        int index = Controller.instance().minimise(dfaIndex);
+        System.out.println("states: " + Controller.instance().automaton(index).states().size()); // 9
+    }
+
+    private static void testParallelDeterminisation() {
+        // The reduced NFA is too small for Controller.determinise to go parallel, so the parallel
+        // subset construction runs on the NFA itself and is compared with the sequential DFA
+        int regexIndex = Controller.instance().createRegularExpression("(a|b)*a(a|b){11}");
+        IndexedNFA nfa = new IndexedNFA(Controller.instance().automaton(
+                Controller.instance().convertRegExToNFA(regexIndex)));
+        Automaton parallel = new ParallelDeterminiser().determinise(nfa, "parallel");
+        Automaton sequential = Controller.instance().automaton(
+                Controller.instance().convertRegExToAutomaton(regexIndex));
+        System.out.println("states: " + parallel.states().size()); // 4097, with the initial state
+        System.out.println("states: " + sequential.states().size()); // 4096
+        System.out.println(new InclusionChecker(new IndexedNFA(parallel), new IndexedNFA(sequential)).isIncluded()
+                && new InclusionChecker(new IndexedNFA(sequential), new IndexedNFA(parallel)).isIncluded()); // true
+    }
+
+    private static void testFlightRecorder() {
+        try (Recording recording = new Recording()) {
+            recording.enable("regexanalyser.*");
+            recording.start();
+            int regexIndex = Controller.instance().createRegularExpression("(a|b)*abb");
+            Controller.instance().minimise(Controller.instance().convertRegExToNFA(regexIndex));
+            recording.stop();
+            Path path = Files.createTempFile("automaton", ".jfr");
+            recording.dump(path);
+            // Link, Parse, SubsetConstruction, RefinementPass...
+            for (RecordedEvent event : RecordingFile.readAllEvents(path)) {
+                System.out.println(event.getEventType().getName() + " " + event.getDuration());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void testMetrics() {
+        int regexIndex = Controller.instance().createRegularExpression("(a|b)*abb");
+        int index = Controller.instance().convertRegExToAutomaton(regexIndex);
+        Controller.instance().matches(index, "ababb");
+        // Also visible in jconsole, under RegExAnalyser
+        System.out.print(Metrics.dump());
+    }
+
+    private static void testServer() {
+        try {
+            AnalysisServer server = new AnalysisServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+            server.start();
+            HttpRequest request = HttpRequest
+                    .newBuilder(URI.create("http://127.0.0.1:" + server.address().getPort() + "/match"))
+                    .POST(HttpRequest.BodyPublishers.ofString("(a|b)*abb\nabb\nab\n")).build();
+            // {"regex":"(a|b)*abb","matches":[true,false]}
+            System.out.println(HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString()).body());
+            server.stop(0);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void testBatch() {
+        try {
+            Path input = Files.createTempFile("batch", ".txt");
+            Files.write(input, Arrays.asList("(a|b)*abb", "a(b|c)*"));
+            // {"line":1,"input":"(a|b)*abb","operation":"minimise","states":4,...}
+            BatchAnalyser.main(new String[] { "-o", "minimise", input.toString() });
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void testBytecode() {
+        int regexIndex = Controller.instance().createRegularExpression("[a-z]+@[a-z]+(com|org)");
+        int index = Controller.instance().convertRegExToAutomaton(regexIndex);
+        Matcher matcher = Controller.instance().compileToBytecode(index);
+        System.out.println("abc@defcom: " + matcher.matches("abc@defcom")); // true
+        System.out.println("abc@def.com: " + Controller.instance().matches(index, "abc@def.com")); // false
+    }
+
+    private static void testWorkspace() {
+        int regexIndex = Controller.instance().createRegularExpression("(ab)*c");
+        Controller.instance().convertRegExToAutomaton(regexIndex);
+        Controller.instance().convertRegExToNFA(regexIndex);
+        try {
+            Path path = Files.createTempFile("workspace", ".rxw");
+            Controller.instance().saveWorkspace(path);
+            Controller.instance().loadWorkspace(path);
+            // Names are read without decoding the automata
+            System.out.println(Controller.instance().automatonName(1)); // NFA 1 (Regex 0)
+            printAutomaton(Controller.instance().getAutomatonForRegex(regexIndex));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void testSerialization() {
+        int regexIndex = Controller.instance().createRegularExpression("[a-z]+@[a-z]+");
+        int index = Controller.instance().convertRegExToAutomaton(regexIndex);
+        try {
+            Path path = Files.createTempFile("automaton", ".dfa");
+            Controller.instance().saveAutomaton(index, path);
+            MappedAutomaton mapped = MappedAutomaton.open(path);
+            System.out.println("source: " + mapped.source()); // [a-z]+@[a-z]+
+            System.out.println("a@b: " + mapped.matches("a@b")); // true
+            printAutomaton(Controller.instance().loadAutomaton(path));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void testSharedTerms() {
+        int regexA = Controller.instance().createRegularExpression("(a|b)*c");
+        int regexB = Controller.instance().createRegularExpression("(b|a)*c");
+        // Same term: no automaton needs to be built
+        System.out.println(Controller.instance().checkEquivalenceOfRegularLanguages(regexA, regexB));
+        int indexA = Controller.instance().convertRegExToAutomatonByDerivatives(regexA);
+        int indexB = Controller.instance().convertRegExToAutomatonByDerivatives(regexB);
+        System.out.println("shared DFA: " + (indexA == indexB)); // true
+    }
+
+    private static void testDerivatives() {
+        int regexA = Controller.instance().createRegularExpression("(a|b)*a");
+        int regexB = Controller.instance().createRegularExpression("(a|b)*b(a|b)*");
+        printAutomaton(Controller.instance().convertRegExToAutomatonByDerivatives(regexA)); // 2 states
+        int index = Controller.instance().intersectRegularExpressions(regexA, regexB);
+        System.out.println("ba: " + Controller.instance().matches(index, "ba")); // true
+        System.out.println("aa: " + Controller.instance().matches(index, "aa")); // false
+        index = Controller.instance().complementRegularExpression(regexA);
+        System.out.println("ab: " + Controller.instance().matches(index, "ab")); // true
+    }
+
+    private static void testCountedRepetition() {
+        int index = Controller.instance().createRegularExpression("[a-z]{2,4}[0-9]{3}");
+        System.out.println("ab123: " + Controller.instance().matchesRegex(index, "ab123")); // true
+        System.out.println("abcde123: " + Controller.instance().matchesRegex(index, "abcde123")); // false
+        printAutomaton(Controller.instance().convertRegExToAutomaton(index));
+
+        // 2^21 states: too large to be converted, but can still be matched
+        index = Controller.instance().createRegularExpression("(a|b)*a(a|b){20}");
+        try {
+            Controller.instance().convertRegExToAutomaton(index);
+        } catch (AutomatonTooLargeException e) {
+            System.out.println(e.message());
+        }
+        System.out.println("abbbbbbbbbbbbbbbbbbbb: " + Controller.instance().matchesRegex(index, "abbbbbbbbbbbbbbbbbbbb")); // true
+
+        // The subtree is shared by the 400 copies
+        index = Controller.instance().createRegularExpression("(a?){400}");
+        System.out.println("a^400: " + Controller.instance().matchesRegex(index, "a".repeat(400))); // true
+        System.out.println("a^401: " + Controller.instance().matchesRegex(index, "a".repeat(401))); // false
+    }
+
+    private static void testByteDFA() {
+        int regexIndex = Controller.instance().createRegularExpression("[a-z\u00e0-\u00ff]+");
+        int index = Controller.instance().convertRegExToAutomaton(regexIndex);
+        ByteDFA dfa = Controller.instance().compileToByteDFA(index);
+        byte[] accepted = "ma\u00e7\u00e3".getBytes(StandardCharsets.UTF_8);
+        byte[] rejected = "ma\u00c7\u00c3".getBytes(StandardCharsets.UTF_8);
+        System.out.println("accepted: " + dfa.matches(accepted)); // true
+        System.out.println("rejected: " + dfa.matches(ByteBuffer.wrap(rejected))); // false
+    }
+
+    private static void testCharacterClasses() {
+        String input = "[a-z][a-z0-9]*";
+        RegExTree tree = new RegExParser(input).parse();
+        Automaton dfa = tree.convertToDFA();
+        System.out.println("vocabulary: " + dfa.vocabulary()); // [0-9], [a-z]
+        dfa.print();
+
+        int indexA = Controller.instance().createRegularExpression("[a-c]*");
+        int indexB = Controller.instance().createRegularExpression("([ab]|[bc])*");
+        Controller.instance().checkEquivalenceOfRegularLanguages(indexA, indexB);
+    }
+
+    private static void testLiteralPrefilter() {
+        int index = Controller.instance().createRegularExpression("(a|b)*abba(a|b)*");
+        String text = "aaaa\nbabbab\nabab\nabbac\nabba\n";
+        System.out.println("lines: " + Controller.instance().matchingLines(index, text)); // [babbab, abba]
+    }
+
+    private static void testMultiPattern() {
+        List<Integer> indices = new ArrayList<>();
+        indices.add(Controller.instance().createRegularExpression("(a|b)*"));
+        indices.add(Controller.instance().createRegularExpression("a*b"));
+        indices.add(Controller.instance().createRegularExpression("(ab)+"));
+        MultiPatternMatcher matcher = Controller.instance().compileRegularExpressions(indices);
+        System.out.println("ab: " + matcher.matchAll("ab")); // {0, 1, 2}
+        System.out.println("aab: " + matcher.matchAll("aab")); // {0, 1}
+        System.out.println("ba: " + matcher.matchAll("ba")); // {0}
+    }
+
+    private static void testShiftAnd() {
+        int index = Controller.instance().createRegularExpression("l(u?d|u?l)*");
+        System.out.println("ludl: " + Controller.instance().matchesRegex(index, "ludl")); // true
+        System.out.println("luu: " + Controller.instance().matchesRegex(index, "luu")); // false
+    }
+
+    private static void testNFASimulation() {
+        int index = createAutomaton(3);
+        Matcher matcher = new NFASimulationMatcher(new IndexedNFA(Controller.instance().automaton(index)));
+        System.out.println("ac: " + matcher.matches("ac")); // true
+        System.out.println("bb: " + matcher.matches("bb")); // true
+        System.out.println("cb: " + matcher.matches("cb")); // true
+        System.out.println("ad: " + matcher.matches("ad")); // false
+    }
+
+    private static void testLazyMatching() {
+        // DFA has 2^8 states, position automaton has 10
+        String input = "(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)";
+        int regexIndex = Controller.instance().createRegularExpression(input);
+        int index = Controller.instance().convertRegExToNFA(regexIndex);
+        printAutomaton(index);
+        System.out.println("abaaaaaa: " + Controller.instance().matches(index, "abaaaaaa")); // true
+        System.out.println("aabbbbbbbb: " + Controller.instance().matches(index, "aabbbbbbbb")); // false
+        System.out.println("bbbbbabbbbbbb: " + Controller.instance().matches(index, "bbbbbabbbbbbb")); // true
+
+        index = Controller.instance().union(createAutomaton(9), createAutomaton(10));
+        System.out.println("aaa: " + Controller.instance().matches(index, "aaa")); // true
+        System.out.println("b: " + Controller.instance().matches(index, "b")); // false
     }
 
     private static void testEquivalence() {
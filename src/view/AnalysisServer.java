@@ -0,0 +1,309 @@
+package view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import controller.Controller;
+import model.exception.AutomatonAlreadyMinimumException;
+import model.exception.AutomatonIsEmptyException;
+import model.exception.AutomatonTooLargeException;
+import model.matcher.Matcher;
+import model.metrics.HitRatio;
+import model.metrics.Metrics;
+
+/**
+ * Serves the analyser over HTTP, so that other services can validate input against regular
+ * expressions without building automata of their own. Every endpoint takes a POST whose body
+ * holds one regular expression per line, and answers with a JSON object:
+ *
+ * <pre>
+ * /compile      regex            compiles the regex into a matcher, unless it was already
+ * /match        regex, strings   tells whether each of the following lines matches the regex
+ * /minimise     regex            the minimum DFA of the regex
+ * /equivalence  regex, regex     how the languages of both regexes relate
+ * /inclusion    regex, regex     whether the language of the first is included in the second
+ * </pre>
+ *
+ * A GET on /metrics returns the dump of {@link Metrics}.
+ *
+ * Requests are served on a fixed pool of threads, each with a controller of its own. Compiled
+ * matchers are immutable, so they are kept in a cache shared by all requests.
+ */
+public class AnalysisServer {
+
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Maximum number of states of the automata built for a request, which keeps a single request
+     * from holding a thread of the pool for long.
+     */
+    private static final int STATE_LIMIT = 10000;
+    private static final int BAD_REQUEST = 400;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int UNPROCESSABLE = 422;
+    private static final HitRatio MATCHER_CACHE = Metrics.hitRatio("server.matcher.cache");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Matcher> matchers;
+
+    /**
+     * Creates a server bound to the given address, which starts serving once
+     * {@link #start()} is called.
+     *
+     * @param threads
+     *            - the number of requests served at once.
+     */
+    public AnalysisServer(InetSocketAddress address, int threads) throws IOException {
+        server = HttpServer.create(address, 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        matchers = Collections.synchronizedMap(new LinkedHashMap<String, Matcher>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Matcher> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] response = Metrics.dump().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            }
+        });
+        server.createContext("/compile", new Endpoint(1, 1) {
+            @Override
+            void respond(List<String> lines, StringBuilder json) {
+                matcher(lines.get(0));
+                json.append(",\"compiled\":true");
+            }
+        });
+        server.createContext("/match", new Endpoint(1, Integer.MAX_VALUE) {
+            @Override
+            void respond(List<String> lines, StringBuilder json) {
+                Matcher matcher = matcher(lines.get(0));
+                json.append(",\"matches\":[");
+                for (int i = 1; i < lines.size(); i++) {
+                    json.append(i > 1 ? "," : "").append(matcher.matches(lines.get(i)));
+                }
+                json.append(']');
+            }
+        });
+        server.createContext("/minimise", new Endpoint(1, 1) {
+            @Override
+            void respond(List<String> lines, StringBuilder json) {
+                Controller controller = controller();
+                int index = controller.convertRegExToAutomaton(controller.createRegularExpression(lines.get(0)));
+                try {
+                    index = controller.minimise(index);
+                } catch (AutomatonAlreadyMinimumException e) {
+                    // The automaton is the result
+                } catch (AutomatonIsEmptyException e) {
+                    json.append(",\"empty\":true");
+                    return;
+                }
+                Json.appendAutomaton(json, controller, index);
+            }
+        });
+        server.createContext("/equivalence", new Endpoint(2, 2) {
+            @Override
+            void respond(List<String> lines, StringBuilder json) {
+                json.append(",\"relation\":").append(Json.quote(Json.relation(compare(lines))));
+            }
+        });
+        server.createContext("/inclusion", new Endpoint(2, 2) {
+            @Override
+            void respond(List<String> lines, StringBuilder json) {
+                int relation = compare(lines);
+                boolean included = relation == Controller.EQUIVALENT || relation == Controller.SUBSET;
+                json.append(",\"included\":").append(included);
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        int threads = 2 * Runtime.getRuntime().availableProcessors();
+        boolean verbose = false;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-p") || args[i].equals("--port")) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-t") || args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-v") || args[i].equals("--verbose")) {
+                verbose = true;
+            }
+        }
+        if (!verbose) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        AnalysisServer server = new AnalysisServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                threads);
+        server.start();
+        System.err.println("Serving on " + server.address());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, and waits at most the given delay for the current ones to finish.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return a controller of its own for a request, whose automata are bounded by the state limit.
+     */
+    private static Controller controller() {
+        Controller controller = Controller.newInstance();
+        controller.setStateLimit(STATE_LIMIT);
+        return controller;
+    }
+
+    /**
+     * Returns the matcher of a regular expression, compiling it unless it is in the cache. Two
+     * requests may compile the same regular expression at once; both matchers are equivalent, so
+     * either is kept.
+     */
+    private Matcher matcher(String regex) {
+        Matcher matcher = matchers.get(regex);
+        MATCHER_CACHE.lookup(matcher != null);
+        if (matcher != null) {
+            return matcher;
+        }
+
+        Controller controller = controller();
+        int index = controller.convertRegExToAutomaton(controller.createRegularExpression(regex));
+        try {
+            index = controller.minimise(index);
+        } catch (AutomatonAlreadyMinimumException | AutomatonIsEmptyException e) {
+            // Compile the automaton as it is
+        }
+        try {
+            matcher = controller.compileToBytecode(index);
+        } catch (IllegalArgumentException e) {
+            // Too large for a method of its own
+            matcher = controller.compileToByteDFA(index);
+        }
+        matchers.put(regex, matcher);
+        return matcher;
+    }
+
+    private int compare(List<String> lines) {
+        Controller controller = controller();
+        int indexA = controller.createRegularExpression(lines.get(0));
+        int indexB = controller.createRegularExpression(lines.get(1));
+        return controller.compareRegularLanguages(indexA, indexB);
+    }
+
+    /**
+     * An endpoint reading the lines of the body of a POST, and writing the fields of the JSON
+     * object of its response.
+     */
+    private abstract static class Endpoint implements HttpHandler {
+
+        private final int minLines;
+        private final int maxLines;
+
+        Endpoint(int minLines, int maxLines) {
+            this.minLines = minLines;
+            this.maxLines = maxLines;
+        }
+
+        abstract void respond(List<String> lines, StringBuilder json);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            StringBuilder json = new StringBuilder("{");
+            int status = 200;
+            try {
+                List<String> lines = lines(exchange.getRequestBody());
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    status = METHOD_NOT_ALLOWED;
+                    json.append("\"error\":\"Only POST is allowed.\"");
+                } else if (lines.size() < minLines || lines.size() > maxLines) {
+                    status = BAD_REQUEST;
+                    json.append("\"error\":\"Wrong number of lines in the request.\"");
+                } else {
+                    json.append("\"regex\":").append(Json.quote(lines.get(0)));
+                    respond(lines, json);
+                }
+            } catch (AutomatonTooLargeException e) {
+                status = UNPROCESSABLE;
+                json.setLength(1);
+                json.append("\"error\":").append(Json.quote(e.message()));
+            } catch (RuntimeException e) {
+                status = BAD_REQUEST;
+                json.setLength(1);
+                String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                json.append("\"error\":").append(Json.quote(message));
+            } catch (StackOverflowError e) {
+                status = UNPROCESSABLE;
+                json.setLength(1);
+                json.append("\"error\":").append(Json.quote("The stack overflowed while serving the request."));
+            } catch (VirtualMachineError e) {
+                throw e;
+            } catch (Error e) {
+                status = UNPROCESSABLE;
+                json.setLength(1);
+                String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                json.append("\"error\":").append(Json.quote(message));
+            }
+
+            byte[] response = json.append("}\n").toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        }
+
+        /**
+         * Splits a body into lines. A final line break does not start an empty line.
+         */
+        private static List<String> lines(InputStream body) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            body.transferTo(bytes);
+            String text = bytes.toString(StandardCharsets.UTF_8);
+            if (text.isEmpty()) {
+                return new ArrayList<>();
+            }
+            return Arrays.asList(text.replaceFirst("\r?\n$", "").split("\r?\n", -1));
+        }
+    }
+}
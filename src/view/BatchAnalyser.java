@@ -0,0 +1,281 @@
+package view;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import controller.Controller;
+import model.exception.AutomatonAlreadyDeterministicException;
+import model.exception.AutomatonAlreadyMinimumException;
+import model.exception.AutomatonIsEmptyException;
+import model.exception.AutomatonTooLargeException;
+import model.metrics.Metrics;
+
+/**
+ * Runs the analyser without a display, over a file of regular expressions or transition tables,
+ * and writes one JSON object per entry. Entries are processed in parallel, each with a controller
+ * of its own, and the results are written in the order of the input.
+ *
+ * <pre>
+ * java view.BatchAnalyser [-o convert|minimise|equivalence] [-t threads] [-v] [-m] [input [output]]
+ * </pre>
+ *
+ * The input is read from the standard input and the results written to the standard output when
+ * no file is given, or the file is "-". Each line of the input holds a regular expression, or two
+ * separated by white space for the equivalence check. Empty lines and lines starting with '#' are
+ * skipped. A transition table starts with a line "table" followed by its initial state, then the
+ * vocabulary, then one row per state until an empty line, as in:
+ *
+ * <pre>
+ * table q0
+ * a b
+ * * q0 q1 -
+ *   q1 q0,q1 q1
+ * </pre>
+ *
+ * A row starts with "*" if the state is accepting; "-" is the error state. With -m, the metrics
+ * recorded while analysing are written to the standard error at the end.
+ */
+public class BatchAnalyser {
+
+    private static final String CONVERT = "convert";
+    private static final String MINIMISE = "minimise";
+    private static final String EQUIVALENCE = "equivalence";
+    private static final String TABLE = "table";
+
+    private final String operation;
+    private int lineNumber;
+
+    public BatchAnalyser(String operation) {
+        if (!operation.equals(CONVERT) && !operation.equals(MINIMISE) && !operation.equals(EQUIVALENCE)) {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+        this.operation = operation;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String operation = CONVERT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean verbose = false;
+        boolean metrics = false;
+        List<String> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") || args[i].equals("--operation")) {
+                operation = args[++i];
+            } else if (args[i].equals("-t") || args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-v") || args[i].equals("--verbose")) {
+                verbose = true;
+            } else if (args[i].equals("-m") || args[i].equals("--metrics")) {
+                metrics = true;
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        // The controller reports its progress on the standard output, which may hold the results
+        PrintStream standardOutput = System.out;
+        System.setOut(verbose ? System.err : new PrintStream(OutputStream.nullOutputStream()));
+
+        BufferedReader in = files.isEmpty() || files.get(0).equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(files.get(0)), StandardCharsets.UTF_8);
+        Writer out = files.size() < 2 || files.get(1).equals("-")
+                ? new BufferedWriter(new OutputStreamWriter(standardOutput, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(files.get(1)), StandardCharsets.UTF_8);
+        try {
+            new BatchAnalyser(operation).run(in, out, threads);
+        } finally {
+            in.close();
+            out.close();
+        }
+        if (metrics) {
+            System.err.print(Metrics.dump());
+        }
+    }
+
+    /**
+     * Reads every entry, analyses them on the given number of threads and writes the results. At
+     * most a few entries per thread are read ahead of the result being written, so the input may
+     * be of any length.
+     */
+    public void run(BufferedReader in, Writer out, int threads) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<String>> pending = new ArrayDeque<>();
+        try {
+            Entry entry;
+            while ((entry = nextEntry(in)) != null) {
+                final Entry task = entry;
+                pending.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return analyse(task);
+                    }
+                }));
+                if (pending.size() >= 4 * threads) {
+                    write(pending.remove(), out);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.remove(), out);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void write(Future<String> result, Writer out) throws IOException, InterruptedException {
+        try {
+            out.write(result.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        out.write('\n');
+    }
+
+    /**
+     * An entry of the input: a line holding regular expressions, or a transition table.
+     */
+    private static class Entry {
+        private final int line;
+        private final String input;
+        private final List<List<String>> table;
+        private final String initialState;
+
+        Entry(int line, String input, List<List<String>> table, String initialState) {
+            this.line = line;
+            this.input = input;
+            this.table = table;
+            this.initialState = initialState;
+        }
+    }
+
+    private Entry nextEntry(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            if (!tokens[0].equals(TABLE)) {
+                return new Entry(lineNumber, line, null, null);
+            }
+
+            int first = lineNumber;
+            StringBuilder input = new StringBuilder(line);
+            List<List<String>> table = new ArrayList<>();
+            String row;
+            while ((row = in.readLine()) != null && !row.trim().isEmpty()) {
+                lineNumber++;
+                input.append('\n').append(row.trim());
+                List<String> cells = new ArrayList<>(Arrays.asList(row.trim().split("\\s+")));
+                if (!table.isEmpty() && !cells.get(0).equals("*")) {
+                    cells.add(0, "");
+                }
+                table.add(cells);
+            }
+            if (row != null) {
+                lineNumber++;
+            }
+            return new Entry(first, input.toString(), table, tokens.length > 1 ? tokens[1] : null);
+        }
+        return null;
+    }
+
+    /**
+     * Analyses an entry with a controller of its own.
+     *
+     * @return the result, or the reason it could not be analysed, as a JSON object.
+     */
+    private String analyse(Entry entry) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"line\":").append(entry.line);
+        json.append(",\"input\":").append(Json.quote(entry.input));
+        json.append(",\"operation\":").append(Json.quote(operation));
+        long start = System.nanoTime();
+        try {
+            Controller controller = Controller.newInstance();
+            if (operation.equals(EQUIVALENCE)) {
+                compare(controller, entry, json);
+            } else {
+                int index = automaton(controller, entry);
+                if (operation.equals(MINIMISE)) {
+                    try {
+                        index = controller.minimise(index);
+                    } catch (AutomatonAlreadyMinimumException e) {
+                        // The automaton is the result
+                    }
+                }
+                Json.appendAutomaton(json, controller, index);
+            }
+        } catch (AutomatonIsEmptyException e) {
+            json.append(",\"empty\":true");
+        } catch (AutomatonTooLargeException e) {
+            json.append(",\"error\":").append(Json.quote(e.message()));
+        } catch (RuntimeException e) {
+            String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            json.append(",\"error\":").append(Json.quote(message));
+        } catch (StackOverflowError e) {
+            // The thread's stack unwound, so the following entries can still be analysed
+            json.append(",\"error\":").append(Json.quote("The stack overflowed while analysing the entry."));
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Error e) {
+            String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            json.append(",\"error\":").append(Json.quote(message));
+        }
+        json.append(",\"millis\":").append((System.nanoTime() - start) / 1000000);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Creates the deterministic automaton of an entry.
+     */
+    private int automaton(Controller controller, Entry entry) {
+        if (entry.table == null) {
+            return controller.convertRegExToAutomaton(controller.createRegularExpression(entry.input));
+        }
+        if (entry.initialState == null || entry.table.isEmpty()) {
+            throw new IllegalArgumentException("A table needs an initial state and a vocabulary.");
+        }
+        int index = controller.createAutomaton(entry.table, entry.initialState);
+        try {
+            index = controller.determinise(index);
+        } catch (AutomatonAlreadyDeterministicException e) {
+            // The automaton is the result
+        }
+        return index;
+    }
+
+    private void compare(Controller controller, Entry entry, StringBuilder json) {
+        String[] regexes = entry.input.split("\\s+");
+        if (entry.table != null || regexes.length != 2) {
+            throw new IllegalArgumentException("The equivalence check needs two regular expressions.");
+        }
+        int indexA = controller.createRegularExpression(regexes[0]);
+        int indexB = controller.createRegularExpression(regexes[1]);
+        String relation = Json.relation(controller.compareRegularLanguages(indexA, indexB));
+        json.append(",\"relation\":").append(Json.quote(relation));
+    }
+}
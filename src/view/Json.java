@@ -0,0 +1,88 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+import controller.Controller;
+
+/**
+ * Writes the JSON results of the batch analyser and of the analysis server.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Appends the states and transitions of an automaton, in the layout of the table of the view.
+     */
+    static void appendAutomaton(StringBuilder json, Controller controller, int index) {
+        Vector<Vector<String>> data = controller.dataFromAutomaton(index);
+        json.append(",\"states\":").append(data.size() - 1);
+        json.append(",\"vocabulary\":").append(array(data.get(0).subList(3, data.get(0).size())));
+
+        List<String> accepting = new ArrayList<>();
+        StringBuilder transitions = new StringBuilder("{");
+        for (int row = 1; row < data.size(); row++) {
+            Vector<String> cells = data.get(row);
+            if (cells.get(0).equals("->")) {
+                json.append(",\"initial\":").append(quote(cells.get(2)));
+            }
+            if (cells.get(1).equals("*")) {
+                accepting.add(cells.get(2));
+            }
+            if (row > 1) {
+                transitions.append(',');
+            }
+            transitions.append(quote(cells.get(2))).append(':').append(array(cells.subList(3, cells.size())));
+        }
+        json.append(",\"accepting\":").append(array(accepting));
+        json.append(",\"transitions\":").append(transitions).append('}');
+    }
+
+    /**
+     * @return the relation returned by {@link Controller#compareRegularLanguages(int, int)}, in
+     *         words.
+     */
+    static String relation(int relation) {
+        switch (relation) {
+        case Controller.EQUIVALENT:
+            return "equivalent";
+        case Controller.SUBSET:
+            return "subset";
+        case Controller.SUPERSET:
+            return "superset";
+        default:
+            return "incomparable";
+        }
+    }
+
+    static String array(List<String> values) {
+        StringBuilder array = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                array.append(',');
+            }
+            array.append(quote(values.get(i)));
+        }
+        return array.append(']').toString();
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c == '\n') {
+                quoted.append("\\n");
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
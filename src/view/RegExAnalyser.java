@@ -5,6 +5,7 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -15,6 +16,7 @@ import java.util.Vector;
 import javax.swing.BoxLayout;
 import javax.swing.DefaultListModel;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JList;
@@ -35,6 +37,7 @@ import controller.Controller;
 import model.exception.AutomatonAlreadyDeterministicException;
 import model.exception.AutomatonAlreadyMinimumException;
 import model.exception.AutomatonIsEmptyException;
+import model.exception.AutomatonTooLargeException;
 import net.miginfocom.swing.MigLayout;
 
 public class RegExAnalyser extends JFrame {
@@ -63,6 +66,8 @@ public class RegExAnalyser extends JFrame {
     private JButton btnIntersection = new JButton("Intersection");
     private JButton btnComplement = new JButton("Complement");
     private JButton btnDifference = new JButton("Difference");
+    private JButton btnSaveWorkspace = new JButton("Save workspace");
+    private JButton btnLoadWorkspace = new JButton("Load workspace");
 
     private JList<String> regexList;
     private JList<String> automatonList;
@@ -78,20 +83,61 @@ public class RegExAnalyser extends JFrame {
     static {
         regexAllowedSymbols.addAll(Arrays.asList('a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n',
                 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z', '0', '1', '2', '3', '4', '5', '6', '7', '8',
-                '9', '(', ')', '|', '*', '+', '?'));
+                '9', '(', ')', '|', '*', '+', '?', '[', ']', '-', '^', '\\', '{', '}', ','));
 
         vocabularySymbols.addAll(
                 Arrays.asList('a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r',
-                        's', 't', 'u', 'v', 'w', 'x', 'y', 'z', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '&'));
+                        's', 't', 'u', 'v', 'w', 'x', 'y', 'z', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '&', '['));
 
         stateSymbols.addAll(Arrays.asList('A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O',
                 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z'));
     }
 
     private void equivalence() {
-        int[] indices = regexList.getSelectedIndices();
-        String result = controller.checkEquivalenceOfRegularLanguages(indices[0], indices[1]);
-        showInformationMessage(result);
+        try {
+            int[] indices = regexList.getSelectedIndices();
+            String result = controller.checkEquivalenceOfRegularLanguages(indices[0], indices[1]);
+            showInformationMessage(result);
+        } catch (AutomatonTooLargeException e) {
+            showWarningMessage(e.message());
+        }
+    }
+
+    private void saveWorkspace() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            try {
+                controller.saveWorkspace(chooser.getSelectedFile().toPath());
+            } catch (IOException e) {
+                showErrorMessage("The workspace could not be saved: " + e.getMessage());
+            }
+        }
+    }
+
+    private void loadWorkspace() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            try {
+                controller.loadWorkspace(chooser.getSelectedFile().toPath());
+            } catch (IOException e) {
+                showErrorMessage("The workspace could not be loaded: " + e.getMessage());
+                return;
+            }
+            regexList.clearSelection();
+            automatonList.clearSelection();
+            regexListModel.clear();
+            automatonListModel.clear();
+            for (int i = 0; i < controller.regexCount(); i++) {
+                regexListModel.addElement(controller.regexName(i));
+            }
+            // Automata are only decoded when selected
+            for (int i = 0; i < controller.automatonCount(); i++) {
+                String name = controller.automatonName(i);
+                automatonListModel.addElement(name == null ? "FA " + i : name);
+            }
+            resetInputPanel();
+            resetOutputPanel();
+        }
     }
 
     private void difference() {
@@ -373,10 +419,14 @@ public class RegExAnalyser extends JFrame {
     }
 
     private void convertRegexToDFA() {
-        int regexIndex = regexList.getSelectedIndex();
-        int index = controller.convertRegExToAutomaton(regexIndex);
-        automatonListModel.addElement("FA " + index + " from Regex " + regexIndex);
-        showAutomaton(index);
+        try {
+            int regexIndex = regexList.getSelectedIndex();
+            int index = controller.convertRegExToAutomaton(regexIndex);
+            automatonListModel.addElement("FA " + index + " from Regex " + regexIndex);
+            showAutomaton(index);
+        } catch (AutomatonTooLargeException e) {
+            showWarningMessage(e.message());
+        }
     }
 
     private void addRegularExpression() {
@@ -391,7 +441,13 @@ public class RegExAnalyser extends JFrame {
             }
         }
 
-        int index = controller.createRegularExpression(input);
+        int index;
+        try {
+            index = controller.createRegularExpression(input);
+        } catch (RuntimeException e) {
+            showErrorMessage("The regular expression is not valid: " + e.getMessage());
+            return;
+        }
         regexListModel.addElement("Regex " + index);
         regexList.setSelectedIndex(index);
         btnRegexToDFA.setEnabled(true);
@@ -522,6 +578,16 @@ public class RegExAnalyser extends JFrame {
                 equivalence();
             }
         });
+        btnSaveWorkspace.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                saveWorkspace();
+            }
+        });
+        btnLoadWorkspace.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                loadWorkspace();
+            }
+        });
 
         // Automaton related
         btnNewAutomaton.addActionListener(new ActionListener() {
@@ -592,6 +658,8 @@ public class RegExAnalyser extends JFrame {
         leftPanel.add(btnRegexToDFA, "growx");
         leftPanel.add(btnRemoveRegex, "growx");
         leftPanel.add(btnEquivalence, "growx");
+        leftPanel.add(btnSaveWorkspace, "growx");
+        leftPanel.add(btnLoadWorkspace, "growx");
 
         btnRegexToDFA.setEnabled(false);
         btnEquivalence.setEnabled(false);